@@ -0,0 +1,94 @@
+package com.cry.copylinearlayout
+
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import android.view.View
+import android.view.View.MeasureSpec
+import android.view.ViewGroup
+import android.widget.LinearLayout
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * CopyLinearLayout 和 android.widget.LinearLayout 的measure/layout耗时对比
+ * 结果输出在logcat里面，tag是 CopyLinearLayoutBenchmark
+ */
+@RunWith(AndroidJUnit4::class)
+class CopyLinearLayoutBenchmark {
+    companion object {
+        private const val TAG = "CopyLinearLayoutBenchmark"
+        private const val WARMUP = 20
+        private const val ITERATIONS = 200
+        private val CHILD_COUNTS = intArrayOf(10, 100, 1000)
+    }
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private fun fill(parent: ViewGroup, count: Int, vertical: Boolean): ViewGroup {
+        for (i in 0 until count) {
+            val lp = if (vertical) {
+                LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 20)
+            } else {
+                LinearLayout.LayoutParams(20, ViewGroup.LayoutParams.MATCH_PARENT)
+            }
+            lp.setMargins(1, 2, 1, 2)
+            parent.addView(View(context), lp)
+        }
+        return parent
+    }
+
+    private fun copy(vertical: Boolean): ViewGroup {
+        val layout = CopyLinearLayout(context)
+        layout.setOrientation(if (vertical) CopyLinearLayout.VERTICAL else CopyLinearLayout.HORIZONTAL)
+        return layout
+    }
+
+    private fun framework(vertical: Boolean): ViewGroup {
+        val layout = LinearLayout(context)
+        layout.orientation = if (vertical) LinearLayout.VERTICAL else LinearLayout.HORIZONTAL
+        return layout
+    }
+
+    //每次都forceLayout，否则measure会被View自己的缓存挡掉
+    private fun run(parent: ViewGroup): Long {
+        val widthSpec = MeasureSpec.makeMeasureSpec(1080, MeasureSpec.AT_MOST)
+        val heightSpec = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+        for (i in 0 until WARMUP) {
+            pass(parent, widthSpec, heightSpec)
+        }
+        val start = System.nanoTime()
+        for (i in 0 until ITERATIONS) {
+            pass(parent, widthSpec, heightSpec)
+        }
+        return (System.nanoTime() - start) / ITERATIONS
+    }
+
+    private fun pass(parent: ViewGroup, widthSpec: Int, heightSpec: Int) {
+        parent.forceLayout()
+        for (i in 0 until parent.childCount) {
+            parent.getChildAt(i).forceLayout()
+        }
+        parent.measure(widthSpec, heightSpec)
+        parent.layout(0, 0, parent.measuredWidth, parent.measuredHeight)
+    }
+
+    private fun compare(vertical: Boolean) {
+        for (count in CHILD_COUNTS) {
+            val copyNanos = run(fill(copy(vertical), count, vertical))
+            val frameworkNanos = run(fill(framework(vertical), count, vertical))
+            Log.i(TAG, String.format("%s children=%d copy=%dns framework=%dns",
+                    if (vertical) "VERTICAL" else "HORIZONTAL", count, copyNanos, frameworkNanos))
+        }
+    }
+
+    @Test
+    fun vertical() {
+        compare(true)
+    }
+
+    @Test
+    fun horizontal() {
+        compare(false)
+    }
+}
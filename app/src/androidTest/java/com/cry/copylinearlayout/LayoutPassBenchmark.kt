@@ -0,0 +1,171 @@
+package com.cry.copylinearlayout
+
+import android.os.Debug
+import android.support.test.InstrumentationRegistry
+import android.support.test.runner.AndroidJUnit4
+import android.util.Log
+import android.view.View
+import android.view.View.MeasureSpec
+import android.view.ViewGroup
+import android.widget.TextView
+import com.cry.copylinearlayout.relative.SimpleDoubleRelativeLayout
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * 真正的LinearLayout、CopyLinearLayout、SimpleLinearLayout、SimpleDoubleRelativeLayout的measure/layout耗时
+ *
+ * :benchmark 里面的JMH只跑headless engine，这些View里面的measure缓存、增量layout、intrinsic size
+ * 这些分支都测不到，所以放在真机上跑
+ * 每种情况输出一行：每次measure+layout的耗时和分配的对象个数
+ * 结果输出在logcat里面，tag是 LayoutPassBenchmark
+ */
+@RunWith(AndroidJUnit4::class)
+class LayoutPassBenchmark {
+    companion object {
+        private const val TAG = "LayoutPassBenchmark"
+        private const val WARMUP = 10
+        //child少的时候多跑几轮，每种情况一共大概过这么多个child
+        private const val CHILD_BUDGET = 200000
+        private val CHILD_COUNTS = intArrayOf(10, 100, 1000, 10000)
+    }
+
+    private enum class Kind { LINEAR, COPY, SIMPLE, RELATIVE }
+
+    /*
+    每一轮之前发生的变化
+    FULL：所有child都forceLayout，所有的child都要重新测
+    PARENT：只有自己requestLayout，走measure缓存
+    ONE_CHILD：只有一个child requestLayout，LinearLayout走增量layout
+     */
+    private enum class Change { FULL, PARENT, ONE_CHILD }
+
+    private val context = InstrumentationRegistry.getTargetContext()
+
+    private val wrap = ViewGroup.LayoutParams.WRAP_CONTENT
+    private val match = ViewGroup.LayoutParams.MATCH_PARENT
+
+    //每三个child里面有一个是match_parent的单行TextView，其他是固定高度的View
+    private fun build(kind: Kind, count: Int, weighted: Boolean): ViewGroup {
+        val parent: ViewGroup = when (kind) {
+            Kind.LINEAR -> {
+                val layout = LinearLayout(context)
+                layout.isIncrementalLayoutEnabled = true
+                layout
+            }
+            Kind.COPY -> CopyLinearLayout(context)
+            Kind.SIMPLE -> SimpleLinearLayout(context)
+            Kind.RELATIVE -> SimpleDoubleRelativeLayout(context)
+        }
+        for (i in 0 until count) {
+            val share = weighted && i % 2 == 0
+            val width = if (i % 3 == 0) match else wrap
+            val height = if (share) 0 else 20 + i % 5 * 4
+            val weight = if (share) 1f else 0f
+            val lp: ViewGroup.LayoutParams = when (kind) {
+                Kind.LINEAR -> LinearLayout.LayoutParams(width, height, weight)
+                Kind.RELATIVE -> {
+                    val params = SimpleDoubleRelativeLayout.LayoutParams(width, height)
+                    if (i + 1 < count) {
+                        params.addRule(SimpleDoubleRelativeLayout.ABOVE, i + 2)
+                    }
+                    params
+                }
+                else -> android.widget.LinearLayout.LayoutParams(width, height, weight)
+            }
+            val child = if (width == match) {
+                val text = TextView(context)
+                text.maxLines = 1
+                text.text = "Item $i"
+                text
+            } else {
+                val view = View(context)
+                view.minimumWidth = 100 + i % 7 * 40
+                view
+            }
+            child.id = i + 1
+            parent.addView(child, lp)
+        }
+        return parent
+    }
+
+    private fun change(parent: ViewGroup, change: Change, iteration: Int) {
+        when (change) {
+            Change.FULL -> {
+                parent.forceLayout()
+                for (i in 0 until parent.childCount) {
+                    parent.getChildAt(i).forceLayout()
+                }
+            }
+            Change.PARENT -> parent.requestLayout()
+            Change.ONE_CHILD -> parent.getChildAt(iteration % parent.childCount).requestLayout()
+        }
+    }
+
+    private fun pass(parent: ViewGroup, widthSpec: Int, heightSpec: Int) {
+        parent.measure(widthSpec, heightSpec)
+        parent.layout(0, 0, parent.measuredWidth, parent.measuredHeight)
+    }
+
+    @Suppress("DEPRECATION")
+    private fun run(kind: Kind, count: Int, weighted: Boolean, exactHeight: Boolean, change: Change) {
+        val parent = build(kind, count, weighted)
+        val widthSpec = MeasureSpec.makeMeasureSpec(1080, MeasureSpec.AT_MOST)
+        val heightSpec = MeasureSpec.makeMeasureSpec(1920,
+                if (exactHeight) MeasureSpec.EXACTLY else MeasureSpec.AT_MOST)
+        pass(parent, widthSpec, heightSpec)
+        for (i in 0 until WARMUP) {
+            change(parent, change, i)
+            pass(parent, widthSpec, heightSpec)
+        }
+
+        val iterations = Math.max(WARMUP, CHILD_BUDGET / count)
+        Debug.resetThreadAllocCount()
+        Debug.startAllocCounting()
+        val start = System.nanoTime()
+        for (i in 0 until iterations) {
+            change(parent, change, i)
+            pass(parent, widthSpec, heightSpec)
+        }
+        val nanos = (System.nanoTime() - start) / iterations
+        Debug.stopAllocCounting()
+        val allocations = Debug.getThreadAllocCount() / iterations
+
+        Log.i(TAG, String.format("%s children=%d weighted=%b height=%s change=%s %dns/op %d allocs/op",
+                kind, count, weighted, if (exactHeight) "EXACTLY" else "AT_MOST", change,
+                nanos, allocations))
+    }
+
+    private fun runAll(kind: Kind, weights: BooleanArray) {
+        for (count in CHILD_COUNTS) {
+            for (weighted in weights) {
+                for (exactHeight in booleanArrayOf(true, false)) {
+                    for (change in Change.values()) {
+                        run(kind, count, weighted, exactHeight, change)
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    fun linearLayout() {
+        runAll(Kind.LINEAR, booleanArrayOf(false, true))
+    }
+
+    //CopyLinearLayout不支持weight
+    @Test
+    fun copyLinearLayout() {
+        runAll(Kind.COPY, booleanArrayOf(false))
+    }
+
+    @Test
+    fun simpleLinearLayout() {
+        runAll(Kind.SIMPLE, booleanArrayOf(false, true))
+    }
+
+    @Test
+    fun simpleDoubleRelativeLayout() {
+        runAll(Kind.RELATIVE, booleanArrayOf(false))
+    }
+}
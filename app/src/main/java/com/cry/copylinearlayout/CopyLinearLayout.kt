@@ -2,10 +2,12 @@ package com.cry.copylinearlayout
 
 import android.content.Context
 import android.support.annotation.IntDef
+import android.support.v4.view.ViewCompat
 import android.util.AttributeSet
 import android.view.View
 import android.view.ViewGroup
 import android.widget.LinearLayout
+import com.cry.layoutengine.LayoutTracer
 
 /**
  * 简单的LinearLayout模仿
@@ -54,8 +56,16 @@ import android.widget.LinearLayout
  *
  * 7. 额外的问题？OverLayoutCompat是怎么是写的？
  *
- * todo:
- * 1. 完成HORIZONTAL的版本
+ * 8. HORIZONTAL的版本
+ *      VERTICAL和HORIZONTAL的计算其实是一样的，只是把宽和高换了一下。
+ *      所以把方向抽象成 Axis，main是排列的方向，cross是另外一个方向。
+ *      每次measure/layout开始的时候选一次Axis，循环里面就不需要再判断方向了
+ *
+ * 9. layout boundary
+ *      如果自己的宽高都是固定的，child的大小怎么变都不会影响到自己的大小。
+ *      这个时候child的requestLayout就没有必要一路传到根节点，让整个window都重新measure。
+ *      只要标记自己，在下一帧自己measure/layout一次就可以了
+ *      只拦child传上来的。自己的visibility、LayoutParams、padding变了，还是要告诉父布局
  *
  *
  * 疑问：
@@ -78,48 +88,196 @@ class CopyLinearLayout : ViewGroup {
         @Retention(AnnotationRetention.SOURCE)
         annotation class OrientationMode
 
+        private val ORIENTATION_ATTRS = intArrayOf(android.R.attr.orientation)
+
+        //LayoutTracer里面记录的span
+        private val TRACE_MEASURE = LayoutTracer.register("CopyLinearLayout.onMeasure")
+        private val TRACE_LAYOUT = LayoutTracer.register("CopyLinearLayout.onLayout")
+        private val TRACE_FORCE_UNIFORM_CROSS = LayoutTracer.register("CopyLinearLayout.forceUniformCross")
+    }
+
+    /**
+     * 方向的抽象。所有的值都是按照 (width,height) 或者 (main,cross) 成对的传入，
+     * 由具体的方向来决定取哪一个
+     */
+    private abstract class Axis {
+        //从宽高中取出主轴方向的值
+        abstract fun main(width: Int, height: Int): Int
+
+        //从宽高中取出交叉轴方向的值
+        abstract fun cross(width: Int, height: Int): Int
+
+        //把主轴和交叉轴的值还原成宽
+        abstract fun width(main: Int, cross: Int): Int
+
+        //把主轴和交叉轴的值还原成高
+        abstract fun height(main: Int, cross: Int): Int
     }
 
+    private object VerticalAxis : Axis() {
+        override fun main(width: Int, height: Int) = height
+        override fun cross(width: Int, height: Int) = width
+        override fun width(main: Int, cross: Int) = cross
+        override fun height(main: Int, cross: Int) = main
+    }
+
+    private object HorizontalAxis : Axis() {
+        override fun main(width: Int, height: Int) = width
+        override fun cross(width: Int, height: Int) = height
+        override fun width(main: Int, cross: Int) = main
+        override fun height(main: Int, cross: Int) = cross
+    }
+
+    //显式声明自己是layout boundary，这时以当前的宽高为准
+    private var mLayoutBoundary = false
+    private var mLocalLayoutPending = false
+    private val mLocalLayout = Runnable { runLocalLayout() }
+    //父布局上一次给的spec，自己重新测的时候还用它
+    private var mLastWidthMeasureSpec = 0
+    private var mLastHeightMeasureSpec = 0
+
+    //没有往上传递的requestLayout的次数
+    var avoidedLayoutEscalations = 0L
+        private set
+
     constructor(context: Context) : super(context) {}
-    constructor(context: Context, attrs: AttributeSet) : super(context, attrs) {}
-    constructor(context: Context, attrs: AttributeSet, defStyleAttr: Int) : super(context, attrs, defStyleAttr) {}
+    constructor(context: Context, attrs: AttributeSet) : super(context, attrs) {
+        readOrientation(context, attrs)
+    }
+
+    constructor(context: Context, attrs: AttributeSet, defStyleAttr: Int) : super(context, attrs, defStyleAttr) {
+        readOrientation(context, attrs)
+    }
+
+    //android:orientation 的值和我们的常量是一致的
+    private fun readOrientation(context: Context, attrs: AttributeSet) {
+        val typedArray = context.obtainStyledAttributes(attrs, ORIENTATION_ATTRS)
+        mOrientation = typedArray.getInt(0, VERTICAL.toInt()).toLong()
+        typedArray.recycle()
+    }
+
+    fun setOrientation(@OrientationMode orientation: Long) {
+        if (mOrientation != orientation) {
+            mOrientation = orientation
+            requestLayout()
+        }
+    }
+
+    @OrientationMode
+    fun getOrientation(): Long = mOrientation
+
+    fun setLayoutBoundary(boundary: Boolean) {
+        mLayoutBoundary = boundary
+    }
+
+    //LayoutParams的宽高都是固定值的时候，自动当成boundary
+    fun isLayoutBoundary(): Boolean = mLayoutBoundary || hasFixedSize()
+
+    private fun hasFixedSize(): Boolean {
+        val lp = layoutParams
+        return lp != null && lp.width >= 0 && lp.height >= 0
+    }
+
+    override fun requestLayout() {
+        //构造函数里面也会调用，这个时候还没有layoutParams，直接走原来的逻辑
+        //自己已经被标记过了，child不会再调到这里，这时候一定是自己变了
+        if (isLayoutBoundary() && parent != null && ViewCompat.isLaidOut(this)
+                && !isLayoutRequested && isChildLayoutRequest()) {
+            //只标记自己。这样child再requestLayout也不会再调到这里
+            forceLayout()
+            if (!mLocalLayoutPending) {
+                mLocalLayoutPending = true
+                ViewCompat.postOnAnimation(this, mLocalLayout)
+            }
+            avoidedLayoutEscalations++
+            return
+        }
+        super.requestLayout()
+    }
 
+    /*
+    child在requestLayout的时候，会先标记自己再调到父布局
+    layout之后可见的child都清掉了标记，所以自己的visibility、LayoutParams、padding变了调到这里的时候，找不到被标记的child
+    GONE的child不会被layout，它身上的标记不算
+     */
+    private fun isChildLayoutRequest(): Boolean {
+        for (index in 0 until childCount) {
+            val child = getChildAt(index)
+            if (child.visibility != View.GONE && child.isLayoutRequested) {
+                return true
+            }
+        }
+        return false
+    }
+
+    //下一帧自己measure/layout一次
+    private fun runLocalLayout() {
+        mLocalLayoutPending = false
+        if (!isLayoutRequested || parent == null) {
+            //父布局已经顺便处理过了
+            return
+        }
+
+        //父布局给的不一定是EXACTLY（weight、ConstraintLayout），所以用它上一次给的spec重新测
+        measure(mLastWidthMeasureSpec, mLastHeightMeasureSpec)
+        if (measuredWidth != width || measuredHeight != height) {
+            //自己的大小变了，这个时候只能交给父布局
+            super.requestLayout()
+            return
+        }
+        layout(left, top, right, bottom)
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        if (mLocalLayoutPending) {
+            mLocalLayoutPending = false
+            removeCallbacks(mLocalLayout)
+        }
+    }
+
+    //方向只在这里判断一次，后面的循环都交给Axis
     override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        LayoutTracer.begin(TRACE_MEASURE)
+        mLastWidthMeasureSpec = widthMeasureSpec
+        mLastHeightMeasureSpec = heightMeasureSpec
         if (mOrientation == VERTICAL) {
             measureVertical(widthMeasureSpec, heightMeasureSpec)
         } else {
             measureHorizontal(widthMeasureSpec, heightMeasureSpec)
         }
-
+        LayoutTracer.end(TRACE_MEASURE)
     }
 
     private fun measureHorizontal(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        measureAlong(HorizontalAxis, widthMeasureSpec, heightMeasureSpec)
+    }
 
+    private fun measureVertical(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        measureAlong(VerticalAxis, widthMeasureSpec, heightMeasureSpec)
     }
 
     /**
-     * onMeasure方法的意义就在与计算自己的高度和宽度。所以要遍历Child来累计高度。和计算出最大的宽度。
+     * onMeasure方法的意义就在与计算自己的高度和宽度。所以要遍历Child来累计主轴的长度。和计算出交叉轴上最大的值。
      *
      * 1. 重点1：去确认当前给的mode.如果vertical的话，就看height
      * 2. 重点2：child.measure(childWidthMeasureSpec, childHeightMeasureSpec); 先计算一遍child
      * 3. 重点3：setMeasuredDimension 来设置自己的大小
      */
-    private fun measureVertical(widthMeasureSpec: Int, heightMeasureSpec: Int) {
-        //因为是垂直的走，所以宽度只能取一个最大值。但是这个最大值，如何去小于parent的值呢？
-        var maxWidth = 0
-        //可以取到的总高度。
-        var totalHeight = 0
+    private fun measureAlong(axis: Axis, widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        //因为是沿着主轴走，所以交叉轴只能取一个最大值。
+        var maxCross = 0
         //这个view的总长度。
         mTotalLength = 0
 
         var allFillParent = true
-        var alternativeMaxWidth = 0
-        var matchWidthLocally = false
-        var matchWidth = false
+        var alternativeMaxCross = 0
+        var matchCross = false
 
-        //先取到高宽的数据。和总数
-        val heightMode = MeasureSpec.getMode(heightMeasureSpec)
-        val widthMode = MeasureSpec.getMode(widthMeasureSpec)
+        //先取到主轴和交叉轴的数据
+        val mainMeasureSpec = axis.main(widthMeasureSpec, heightMeasureSpec)
+        val crossMeasureSpec = axis.cross(widthMeasureSpec, heightMeasureSpec)
+        val crossMode = MeasureSpec.getMode(crossMeasureSpec)
 
         val childCount = childCount
 
@@ -138,101 +296,100 @@ class CopyLinearLayout : ViewGroup {
             //得到对应的layoutParams
             val layoutParams = childView.layoutParams as LinearLayout.LayoutParams
 
-            val weight = layoutParams.weight
-
-            //得到计算的使用高度
-            val usedHeight = mTotalLength
+            //得到计算的使用长度
+            val usedMain = mTotalLength
 
             //先对子View进行measure一次
-            measureChildBeforeLayout(childView, childIndex, widthMeasureSpec, 0, heightMeasureSpec, usedHeight);
+            measureChildBeforeLayout(childView, childIndex,
+                    widthMeasureSpec, axis.width(usedMain, 0),
+                    heightMeasureSpec, axis.height(usedMain, 0))
 
-            //计算后，在得到高度
-            val childHeight = childView.measuredHeight
+            //计算后，在得到主轴上的长度
+            val childMain = axis.main(childView.measuredWidth, childView.measuredHeight)
 
             val totalLength = mTotalLength
-            //最后的高度还需要加上margin
-            mTotalLength = Math.max(totalLength, totalLength + childHeight
-                    + layoutParams.topMargin
-                    + layoutParams.bottomMargin
-            )
-
-
-            if (widthMode != MeasureSpec.EXACTLY && layoutParams.width == LayoutParams.MATCH_PARENT) {
+            //最后的长度还需要加上margin
+            mTotalLength = Math.max(totalLength, totalLength + childMain + axis.main(
+                    layoutParams.leftMargin + layoutParams.rightMargin,
+                    layoutParams.topMargin + layoutParams.bottomMargin))
+
+            val crossParam = axis.cross(layoutParams.width, layoutParams.height)
+            var matchCrossLocally = false
+            if (crossMode != MeasureSpec.EXACTLY && crossParam == LayoutParams.MATCH_PARENT) {
                 //如果不是exactly模式的话，至少有一个child要和我们的大小一样大。所以至少得测量自身的大小
-                matchWidth = true
-                matchWidthLocally = true
+                matchCross = true
+                matchCrossLocally = true
             }
 
             //接下来去得到margin
-            val margin = layoutParams.leftMargin + layoutParams.rightMargin
-            val measureWidth = childView.measuredWidth + margin
+            val margin = axis.cross(layoutParams.leftMargin + layoutParams.rightMargin,
+                    layoutParams.topMargin + layoutParams.bottomMargin)
+            val measureCross = axis.cross(childView.measuredWidth, childView.measuredHeight) + margin
             //来得到我们的最大值
-            maxWidth = Math.max(maxWidth, measureWidth)
-
-            //childState到底是什么呢？
+            maxCross = Math.max(maxCross, measureCross)
 
             //判断是否是match
-            allFillParent = allFillParent && layoutParams.width == LayoutParams.MATCH_PARENT
-            var tempWidth = 0
-            if (matchWidthLocally) {
-                tempWidth = margin
-            } else {
-                tempWidth = measureWidth
-            }
-            alternativeMaxWidth = Math.max(alternativeMaxWidth, tempWidth)
-
+            allFillParent = allFillParent && crossParam == LayoutParams.MATCH_PARENT
+            alternativeMaxCross = Math.max(alternativeMaxCross,
+                    if (matchCrossLocally) margin else measureCross)
         }
-        //遍历之后，就得到了高度和宽度了。这个时候来生成MeasureSpec，设置自己的高宽
+        //遍历之后，就得到了主轴和交叉轴的长度了。这个时候来生成MeasureSpec，设置自己的高宽
 
-        //到外面来要加padding
-        var heightSize = mTotalLength
-        //确定最大的高度
-        heightSize = Math.max(heightSize, suggestedMinimumHeight)
-
-        val heightSizeAndState = View.resolveSizeAndState(heightSize, heightMeasureSpec, 0)
-        //通过位运算取出高度
-        heightSize = heightSizeAndState and View.MEASURED_SIZE_MASK
+        //确定主轴上最大的长度
+        val mainSize = Math.max(mTotalLength, axis.main(suggestedMinimumWidth, suggestedMinimumHeight))
+        val mainSizeAndState = View.resolveSizeAndState(mainSize, mainMeasureSpec, 0)
 
         //如果不是match的也不是exactly的话最大宽度
-        if (!allFillParent && widthMode != View.MeasureSpec.EXACTLY) {
-            maxWidth = alternativeMaxWidth
+        if (!allFillParent && crossMode != View.MeasureSpec.EXACTLY) {
+            maxCross = alternativeMaxCross
         }
 
         //最大宽度同时也要支持
-        maxWidth = Math.max(maxWidth, suggestedMinimumWidth)
+        maxCross = Math.max(maxCross, axis.cross(suggestedMinimumWidth, suggestedMinimumHeight))
+        val crossSizeAndState = View.resolveSizeAndState(maxCross, crossMeasureSpec, 0)
 
         //最重要的是，设置该view的Dimension
-        setMeasuredDimension(View.resolveSizeAndState(maxWidth, widthMeasureSpec, 0), heightSizeAndState)
-
+        setMeasuredDimension(axis.width(mainSizeAndState, crossSizeAndState),
+                axis.height(mainSizeAndState, crossSizeAndState))
 
-        if (matchWidth) {
-            forceUniformWidth(childCount, heightMeasureSpec)
+        if (matchCross) {
+            forceUniformCross(axis, childCount)
         }
     }
 
-    //强制子View的宽度都和自己一样
-    private fun forceUniformWidth(childCount: Int, heightMeasureSpec: Int) {
-        val uniformMeasureSpec = View.MeasureSpec.makeMeasureSpec(measuredWidth,
-                View.MeasureSpec.EXACTLY)
+    //强制子View在交叉轴上都和自己一样
+    private fun forceUniformCross(axis: Axis, childCount: Int) {
+        LayoutTracer.begin(TRACE_FORCE_UNIFORM_CROSS)
+        val uniformMeasureSpec = View.MeasureSpec.makeMeasureSpec(
+                axis.cross(measuredWidth, measuredHeight), View.MeasureSpec.EXACTLY)
+        val crossPadding = axis.cross(paddingLeft + paddingRight, paddingTop + paddingBottom)
         for (i in 0 until childCount) {
             val child = getChildAt(i)
             child?.apply {
                 if (this.visibility != View.GONE) {
                     val lp = this.layoutParams as LinearLayout.LayoutParams
-                    //如果宽度是match的话，就使用当前的width
-                    if (lp.width == LayoutParams.MATCH_PARENT) {
-                        // Temporarily force children to reuse their old measured height
-                        // FIXME: this may not be right for something like wrapping text?
-                        val oldHeight = lp.height
-                        lp.height = this.measuredHeight
+                    //如果交叉轴是match的话，就使用当前的大小
+                    if (axis.cross(lp.width, lp.height) == LayoutParams.MATCH_PARENT) {
+                        val crossSpec = getChildMeasureSpec(uniformMeasureSpec,
+                                crossPadding + axis.cross(lp.leftMargin + lp.rightMargin,
+                                        lp.topMargin + lp.bottomMargin),
+                                LayoutParams.MATCH_PARENT)
+                        //交叉轴已经是这个大小了，再测一次也是同样的结果，直接跳过
+                        if (axis.cross(measuredWidth, measuredHeight) ==
+                                View.MeasureSpec.getSize(crossSpec)) {
+                            return@apply
+                        }
+                        //主轴方向沿用上一次测量的结果。直接通过spec传进去，不去临时修改layoutParams
+                        val mainSpec = View.MeasureSpec.makeMeasureSpec(
+                                axis.main(measuredWidth, measuredHeight), View.MeasureSpec.EXACTLY)
                         // Remeasue with new dimensions
-                        measureChildWithMargins(child, uniformMeasureSpec, 0, heightMeasureSpec, 0)
-                        lp.height = oldHeight
+                        measure(axis.width(mainSpec, crossSpec), axis.height(mainSpec, crossSpec))
                     }
                 }
             }
 
         }
+        LayoutTracer.end(TRACE_FORCE_UNIFORM_CROSS)
     }
 
     /**
@@ -254,34 +411,47 @@ class CopyLinearLayout : ViewGroup {
 
     //ViewGroup必须重写的是onLayout方法。
     override fun onLayout(changed: Boolean, l: Int, t: Int, r: Int, b: Int) {
+        LayoutTracer.begin(TRACE_LAYOUT)
         //linearLayout是两个方向的
-        layoutVertical(l, t, r, b)
+        if (mOrientation == VERTICAL) {
+            layoutVertical(l, t, r, b)
+        } else {
+            layoutHorizontal(l, t, r, b)
+        }
+        LayoutTracer.end(TRACE_LAYOUT)
     }
 
     private fun layoutVertical(left: Int, top: Int, right: Int, bottom: Int) {
-        var childTop = 0
-        var childLeft = 0
-        // Where right end of child should go
-        val width = right - left
+        layoutAlong(VerticalAxis)
+    }
+
+    private fun layoutHorizontal(left: Int, top: Int, right: Int, bottom: Int) {
+        layoutAlong(HorizontalAxis)
+    }
+
+    private fun layoutAlong(axis: Axis) {
+        var childMain = 0
 
         val count = childCount
 
-        for (i in 0 until childCount) {
+        for (i in 0 until count) {
             val child = getChildAt(i)
             if (child == null) {
-                childTop += 0
+                childMain += 0
             } else if (child.visibility != View.GONE) { //只会布局不可见的
                 val measuredWidth = child.measuredWidth
                 val measuredHeight = child.measuredHeight
 
-                var layoutParams = child.layoutParams as LinearLayout.LayoutParams
-                //topMargin加在头部
-                childTop += layoutParams.topMargin
+                val layoutParams = child.layoutParams as LinearLayout.LayoutParams
+                //开始的margin加在头部
+                childMain += axis.main(layoutParams.leftMargin, layoutParams.topMargin)
+                val childCross = axis.cross(layoutParams.leftMargin, layoutParams.topMargin)
 
-                setChildFrame(child, childLeft + 0, childTop,
+                setChildFrame(child, axis.width(childMain, childCross), axis.height(childMain, childCross),
                         measuredWidth, measuredHeight)
 
-                childTop += measuredHeight + layoutParams.bottomMargin
+                childMain += axis.main(measuredWidth, measuredHeight) +
+                        axis.main(layoutParams.rightMargin, layoutParams.bottomMargin)
             }
         }
     }
@@ -293,4 +463,4 @@ class CopyLinearLayout : ViewGroup {
     override fun generateLayoutParams(attrs: AttributeSet): LayoutParams {
         return LinearLayout.LayoutParams(context, attrs)
     }
-}
\ No newline at end of file
+}
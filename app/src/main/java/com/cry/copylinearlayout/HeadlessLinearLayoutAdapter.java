@@ -0,0 +1,109 @@
+package com.cry.copylinearlayout;
+
+import android.graphics.drawable.Drawable;
+import android.support.v4.view.ViewCompat;
+import android.view.Gravity;
+import android.view.View;
+
+import com.cry.layoutengine.ChildMeasurer;
+import com.cry.layoutengine.LayoutNodes;
+import com.cry.layoutengine.LinearLayoutEngine;
+
+/**
+ * Drives a real {@link LinearLayout} from the headless
+ * {@link LinearLayoutEngine}: the children's layout params are copied into
+ * {@link LayoutNodes}, the engine works out the geometry, real children are
+ * measured through {@link View#measure(int, int)} when the engine asks for
+ * it, and the resulting frames are applied with {@link View#layout}.
+ * <p>
+ * The same adapter can be reused for any number of passes; it does not
+ * allocate once its nodes have grown to the child count.
+ */
+public class HeadlessLinearLayoutAdapter {
+    private final LinearLayoutEngine mEngine = new LinearLayoutEngine();
+    private final LayoutNodes mNodes = new LayoutNodes();
+    private LinearLayout mLayout;
+
+    private final ChildMeasurer mMeasurer = new ChildMeasurer() {
+        @Override
+        public void measure(LayoutNodes nodes, int index, int widthMeasureSpec,
+                            int heightMeasureSpec) {
+            final View child = mLayout.getVirtualChildAt(index);
+            if (child == null) {
+                nodes.setMeasuredDimension(index, 0, 0);
+                return;
+            }
+            child.measure(widthMeasureSpec, heightMeasureSpec);
+            nodes.setMeasuredDimension(index, child.getMeasuredWidthAndState(),
+                    child.getMeasuredHeightAndState());
+        }
+    };
+
+    public LinearLayoutEngine getEngine() {
+        return mEngine;
+    }
+
+    public LayoutNodes getNodes() {
+        return mNodes;
+    }
+
+    /**
+     * Measures the children of the layout with the engine. The layout's own
+     * size is left in {@link #getEngine()}.
+     */
+    public void measure(LinearLayout layout, int widthMeasureSpec, int heightMeasureSpec) {
+        mLayout = layout;
+        final int layoutDirection = ViewCompat.getLayoutDirection(layout);
+        mNodes.clear();
+        final int count = layout.getVirtualChildCount();
+        for (int i = 0; i < count; i++) {
+            final View child = layout.getVirtualChildAt(i);
+            if (child == null) {
+                // LinearLayout gives a null child no room (measureNullChild),
+                // which is what the engine does with a GONE node.
+                mNodes.add(0, 0, 0, -1, 0, 0, 0, 0, View.GONE);
+                continue;
+            }
+            final LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) child.getLayoutParams();
+            final int gravity = lp.gravity < 0 ? -1
+                    : Gravity.getAbsoluteGravity(lp.gravity, layoutDirection)
+                    & Gravity.HORIZONTAL_GRAVITY_MASK;
+            final int index = mNodes.add(lp.width, lp.height, lp.weight, gravity,
+                    lp.leftMargin, lp.topMargin, lp.rightMargin, lp.bottomMargin,
+                    child.getVisibility());
+            // Views keep the size of their last pass, and LinearLayout reads
+            // it for children it has not measured yet.
+            mNodes.setMeasuredDimension(index, child.getMeasuredWidthAndState(),
+                    child.getMeasuredHeightAndState());
+        }
+
+        mEngine.setPadding(layout.getPaddingLeft(), layout.getPaddingTop(),
+                layout.getPaddingRight(), layout.getPaddingBottom());
+        // Same as View.getSuggestedMinimumWidth/Height, which are protected.
+        final Drawable background = layout.getBackground();
+        mEngine.setMinimumSize(
+                Math.max(ViewCompat.getMinimumWidth(layout),
+                        background == null ? 0 : background.getMinimumWidth()),
+                Math.max(ViewCompat.getMinimumHeight(layout),
+                        background == null ? 0 : background.getMinimumHeight()));
+        mEngine.measureVertical(mNodes, widthMeasureSpec, heightMeasureSpec, mMeasurer);
+        mLayout = null;
+    }
+
+    /**
+     * Lays out the children measured by the last
+     * {@link #measure(LinearLayout, int, int)} inside the given bounds of
+     * the layout.
+     */
+    public void layout(LinearLayout layout, int left, int top, int right, int bottom) {
+        mEngine.layoutVertical(mNodes, left, top, right, bottom);
+        final int count = mNodes.getCount();
+        for (int i = 0; i < count; i++) {
+            if (mNodes.getVisibility(i) == View.GONE) {
+                continue;
+            }
+            layout.getVirtualChildAt(i).layout(mNodes.getLeft(i), mNodes.getTop(i),
+                    mNodes.getRight(i), mNodes.getBottom(i));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.cry.copylinearlayout;
+
+/**
+ * Implemented by views that can tell their parent how big they want to be
+ * without going through a full {@link android.view.View#measure(int, int)}.
+ * <p>
+ * {@link LinearLayout} uses this to size itself before measuring its
+ * children, so that children matching its width are measured only once,
+ * with the final width.
+ */
+public interface IntrinsicSizeProvider {
+    /**
+     * Passed as the constraint when the other dimension is not limited.
+     */
+    int UNBOUNDED = -1;
+
+    /**
+     * @param height the height the view will get, or {@link #UNBOUNDED}
+     * @return the smallest width the view can be shown in
+     */
+    int getMinIntrinsicWidth(int height);
+
+    /**
+     * @param height the height the view will get, or {@link #UNBOUNDED}
+     * @return the width the view takes when measured with
+     * {@link android.view.View.MeasureSpec#AT_MOST} and plenty of room
+     */
+    int getMaxIntrinsicWidth(int height);
+
+    /**
+     * @param width the width the view will get, or {@link #UNBOUNDED}
+     * @return the smallest height the view can be shown in
+     */
+    int getMinIntrinsicHeight(int width);
+
+    /**
+     * @param width the width the view will get, or {@link #UNBOUNDED}
+     * @return the height the view takes when measured with
+     * {@link android.view.View.MeasureSpec#AT_MOST} and plenty of room
+     */
+    int getMaxIntrinsicHeight(int width);
+}
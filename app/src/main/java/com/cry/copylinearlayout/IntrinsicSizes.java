@@ -0,0 +1,87 @@
+package com.cry.copylinearlayout;
+
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.widget.TextViewCompat;
+import android.text.BoringLayout;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.view.View;
+import android.widget.TextView;
+
+/**
+ * Looks up the intrinsic width of a child that matches the width of its
+ * {@link LinearLayout}. Views implementing {@link IntrinsicSizeProvider}
+ * answer for themselves; plain single-line TextViews are handled by the
+ * adapter below. Anything else has no known intrinsic size and is measured.
+ */
+final class IntrinsicSizes {
+
+    private IntrinsicSizes() {
+    }
+
+    /**
+     * @return whether the intrinsic size of <code>view</code> can be asked
+     * for without measuring it
+     */
+    static boolean hasIntrinsicSize(View view) {
+        return view instanceof IntrinsicSizeProvider
+                || isPlainSingleLineText(view);
+    }
+
+    /**
+     * @param height the height the view will get, or
+     *               {@link IntrinsicSizeProvider#UNBOUNDED}
+     * @return the width the view takes when given plenty of room, or -1 if unknown
+     */
+    static int getMaxIntrinsicWidth(View view, int height) {
+        if (view instanceof IntrinsicSizeProvider) {
+            return ((IntrinsicSizeProvider) view).getMaxIntrinsicWidth(height);
+        }
+        if (isPlainSingleLineText(view)) {
+            return singleLineTextWidth((TextView) view);
+        }
+        return -1;
+    }
+
+    /*
+     * Single-line text adapter. It repeats what TextView.onMeasure does for
+     * one line of boring text, so it only accepts text that reaches that
+     * path untouched: no spans, no transformation (allCaps, password,
+     * singleLine), no hint in place of the text, no editor, no top or bottom
+     * drawables and no min/max width. BoringLayout rejects newlines and
+     * bidi text. Everything else is measured.
+     */
+    private static boolean isPlainSingleLineText(View view) {
+        if (!(view instanceof TextView) || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+        final TextView textView = (TextView) view;
+        if (TextViewCompat.getMaxLines(textView) != 1
+                || textView.getTransformationMethod() != null
+                || textView.onCheckIsTextEditor()
+                || textView.getMinWidth() != 0
+                || textView.getMaxWidth() != Integer.MAX_VALUE) {
+            return false;
+        }
+        final CharSequence text = textView.getText();
+        if (text instanceof Spanned
+                || text.length() == 0 && !TextUtils.isEmpty(textView.getHint())) {
+            return false;
+        }
+        final Drawable[] drawables = textView.getCompoundDrawables();
+        if (drawables[1] != null || drawables[3] != null) {
+            return false;
+        }
+        return BoringLayout.isBoring(text, textView.getPaint()) != null;
+    }
+
+    private static int singleLineTextWidth(TextView view) {
+        final BoringLayout.Metrics boring = BoringLayout.isBoring(view.getText(), view.getPaint());
+        final int width = boring.width + view.getCompoundPaddingLeft() + view.getCompoundPaddingRight();
+        final Drawable background = view.getBackground();
+        return Math.max(width, Math.max(ViewCompat.getMinimumWidth(view),
+                background == null ? 0 : background.getMinimumWidth()));
+    }
+}
@@ -2,6 +2,9 @@ package com.cry.copylinearlayout;
 
 
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
 import android.support.annotation.IntDef;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
@@ -10,15 +13,15 @@ import android.view.Gravity;
 import android.view.View;
 import android.view.ViewDebug;
 import android.view.ViewGroup;
+import android.view.animation.Animation;
+
+import com.cry.layoutengine.LayoutTracer;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
 
 public class LinearLayout extends ViewGroup {
-    int mPaddingLeft = 0;
-    int mPaddingRight = 0;
-    int mPaddingTop = 0;
-    int mPaddingBottom = 0;
     private int mGravity = Gravity.START | Gravity.TOP;
 
     @IntDef({HORIZONTAL, VERTICAL})
@@ -29,8 +32,119 @@ public class LinearLayout extends ViewGroup {
     public static final int HORIZONTAL = 0;
     public static final int VERTICAL = 1;
 
+    // Spans recorded by LayoutTracer.
+    private static final int TRACE_MEASURE = LayoutTracer.register("LinearLayout.onMeasure");
+    private static final int TRACE_LAYOUT = LayoutTracer.register("LinearLayout.onLayout");
+    private static final int TRACE_DRAW = LayoutTracer.register("LinearLayout.dispatchDraw");
+    private static final int TRACE_WEIGHT_PASS = LayoutTracer.register("LinearLayout.weightPass");
+    private static final int TRACE_FORCE_UNIFORM_WIDTH =
+            LayoutTracer.register("LinearLayout.forceUniformWidth");
+
     private int mTotalLength;
 
+    /**
+     * Bumped whenever something that can change the result of
+     * {@link #measureVertical(int, int)} happens: a layout request coming
+     * up from ourselves or a child, or a child being added or removed. A
+     * child's request that stops at us because we are already flagged is
+     * caught in {@link #isLayoutRequested()}.
+     */
+    private int mChildGeneration;
+
+    // The result of the last measure pass and the inputs it was computed from.
+    private int mCachedGeneration = -1;
+    private int mCachedWidthMeasureSpec;
+    private int mCachedHeightMeasureSpec;
+    private int mCachedMeasuredWidth;
+    private int mCachedMeasuredHeight;
+    private int mCachedTotalLength;
+
+    private long mMeasureCacheHits;
+    private long mMeasureCacheMisses;
+
+    // Marks a child slot that layoutVertical must not place.
+    private static final int CHILD_SKIPPED = 1;
+    // Marks a null child slot; its height comes from measureNullChild.
+    private static final int CHILD_NULL = 1 << 1;
+    // Marks a child whose height spec does not depend on the space used above it.
+    private static final int CHILD_FIXED_HEIGHT = 1 << 2;
+    // Marks a skipped child that is skipped because it is GONE.
+    private static final int CHILD_GONE = 1 << 3;
+    // Marks a child that matches our width in a negotiated pass.
+    private static final int CHILD_MATCH_WIDTH = 1 << 4;
+
+    /*
+     * Per-child metrics captured by measureVertical and consumed by
+     * layoutVertical, indexed by virtual child index. The arrays only grow,
+     * so once they fit the child count no pass allocates.
+     */
+    private int mMetricsCount;
+    private int[] mChildFlags = new int[0];
+    private int[] mChildWidths = new int[0];
+    private int[] mChildHeights = new int[0];
+    private int[] mChildLeftMargins = new int[0];
+    private int[] mChildTopMargins = new int[0];
+    private int[] mChildRightMargins = new int[0];
+    private int[] mChildBottomMargins = new int[0];
+    private int[] mChildGravities = new int[0];
+    private int[] mChildLocationOffsets = new int[0];
+    private int[] mChildNextLocationOffsets = new int[0];
+    private int[] mChildUsedHeights = new int[0];
+
+    /*
+     * Frames of the laid out children in layout order, built by
+     * layoutVertical. mIndexMaxBottoms is the running maximum of the bottoms
+     * and mIndexMinTops the minimum of the tops from each entry to the end,
+     * so both stay sorted even when negative margins make children overlap.
+     */
+    private boolean mChildIndexEnabled;
+    private boolean mChildIndexValid;
+    private int mIndexCount;
+    private int[] mIndexChildren = new int[0];
+    private int[] mIndexLefts = new int[0];
+    private int[] mIndexTops = new int[0];
+    private int[] mIndexRights = new int[0];
+    private int[] mIndexBottoms = new int[0];
+    private int[] mIndexMaxBottoms = new int[0];
+    private int[] mIndexMinTops = new int[0];
+    // Layout cursor after each entry, margins and offsets included.
+    private int[] mIndexCursorsAfter = new int[0];
+    // Layout cursor at each virtual child, including skipped ones.
+    private int[] mChildCursors = new int[0];
+    // Index entry of each virtual child, -1 when it was not laid out.
+    private int[] mChildIndexEntries = new int[0];
+    private final Rect mClipBounds = new Rect();
+
+    /*
+     * Incremental relayout. mStructureGeneration only moves when children are
+     * added, removed or forced, so together with the cached specs it tells
+     * whether the metrics of the last pass still describe every sibling.
+     */
+    private boolean mIncrementalLayoutEnabled;
+    private int mStructureGeneration;
+    private int mMetricsStructureGeneration = -1;
+    // Padding the metrics were measured with; it changes the child specs.
+    private int mMetricsPaddingLeft;
+    private int mMetricsPaddingTop;
+    private int mMetricsPaddingRight;
+    private int mMetricsPaddingBottom;
+    private boolean mLastPassIncremental;
+    private boolean mLayoutClean;
+    private int mIncrementalChild = -1;
+    private int mLastLayoutWidth = -1;
+    private long mIncrementalLayoutCount;
+
+    // Measures avoided by sizing ourselves from intrinsic sizes first.
+    private long mSavedMeasureCount;
+
+    /*
+     * Children ViewGroup keeps drawing after they leave their frame or us:
+     * removed while animating, or held by startViewTransition. The index
+     * does not know about them, so drawing falls back to the full pass.
+     */
+    private final ArrayList<View> mRemovedAnimatingChildren = new ArrayList<>();
+    private final ArrayList<View> mTransitioningChildren = new ArrayList<>();
+
     public LinearLayout(Context context) {
         this(context, null);
     }
@@ -54,10 +168,267 @@ public class LinearLayout extends ViewGroup {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        measureVertical(widthMeasureSpec, heightMeasureSpec);
+        LayoutTracer.begin(TRACE_MEASURE);
+        // Parents such as ScrollView measure us more than once per frame with
+        // the same specs. Only the last pass is remembered, because that is
+        // the one whose sizes our children are still holding.
+        if (mCachedGeneration == mChildGeneration
+                && mCachedWidthMeasureSpec == widthMeasureSpec
+                && mCachedHeightMeasureSpec == heightMeasureSpec) {
+            mMeasureCacheHits++;
+            mTotalLength = mCachedTotalLength;
+            setMeasuredDimension(mCachedMeasuredWidth, mCachedMeasuredHeight);
+            LayoutTracer.end(TRACE_MEASURE);
+            return;
+        }
+
+        mMeasureCacheMisses++;
+        final int incrementalChild = mIncrementalLayoutEnabled
+                ? measureIncrementally(widthMeasureSpec, heightMeasureSpec) : -1;
+        if (incrementalChild < 0) {
+            measureVertical(widthMeasureSpec, heightMeasureSpec);
+            mMetricsStructureGeneration = mStructureGeneration;
+            mMetricsPaddingLeft = getPaddingLeft();
+            mMetricsPaddingTop = getPaddingTop();
+            mMetricsPaddingRight = getPaddingRight();
+            mMetricsPaddingBottom = getPaddingBottom();
+            mIncrementalChild = -1;
+        } else if (mLayoutClean) {
+            mIncrementalChild = incrementalChild;
+        } else if (mIncrementalChild != incrementalChild) {
+            // Two different children changed before we were laid out.
+            mIncrementalChild = -1;
+        }
+        mLayoutClean = false;
+
+        mCachedGeneration = mChildGeneration;
+        mCachedWidthMeasureSpec = widthMeasureSpec;
+        mCachedHeightMeasureSpec = heightMeasureSpec;
+        mCachedMeasuredWidth = getMeasuredWidthAndState();
+        mCachedMeasuredHeight = getMeasuredHeightAndState();
+        mCachedTotalLength = mTotalLength;
+        LayoutTracer.end(TRACE_MEASURE);
+    }
+
+    /**
+     * A child asks us this before passing its layout request up, and stops
+     * when we are already flagged, so {@link #requestLayout()} never sees
+     * it. Record it here instead, so a cache hit stays a single compare. A
+     * query from anyone else only costs a cache miss.
+     */
+    @Override
+    public boolean isLayoutRequested() {
+        final boolean requested = super.isLayoutRequested();
+        if (requested) {
+            mChildGeneration++;
+        }
+        return requested;
+    }
+
+    @Override
+    public void requestLayout() {
+        // Child size, visibility and LayoutParams changes all arrive here.
+        mChildGeneration++;
+        super.requestLayout();
+    }
+
+    @Override
+    public void forceLayout() {
+        mChildGeneration++;
+        mStructureGeneration++;
+        super.forceLayout();
+    }
+
+    @Override
+    public void onViewAdded(View child) {
+        super.onViewAdded(child);
+        mChildGeneration++;
+        mStructureGeneration++;
+        mChildIndexValid = false;
+    }
+
+    @Override
+    public void onViewRemoved(View child) {
+        super.onViewRemoved(child);
+        mChildGeneration++;
+        mStructureGeneration++;
+        mChildIndexValid = false;
+        if (child.getAnimation() != null) {
+            mRemovedAnimatingChildren.add(child);
+        }
+    }
+
+    @Override
+    public void startViewTransition(View view) {
+        super.startViewTransition(view);
+        if (view.getParent() == this && !mTransitioningChildren.contains(view)) {
+            mTransitioningChildren.add(view);
+        }
+    }
+
+    @Override
+    public void endViewTransition(View view) {
+        super.endViewTransition(view);
+        mTransitioningChildren.remove(view);
+    }
+
+    /**
+     * @return how many times {@link #onMeasure(int, int)} was answered from
+     * the result of the previous pass without measuring any child
+     */
+    public long getMeasureCacheHitCount() {
+        return mMeasureCacheHits;
+    }
+
+    /**
+     * @return how many times {@link #onMeasure(int, int)} had to walk the
+     * children
+     */
+    public long getMeasureCacheMissCount() {
+        return mMeasureCacheMisses;
+    }
+
+    /**
+     * When enabled, a layout request coming from a single child re-measures
+     * only that child and moves the siblings below it by the change in its
+     * height, instead of measuring and laying out every child again. Passes
+     * where other children could be affected (weights, a width that follows
+     * the children, siblings whose height depends on the remaining space)
+     * still run in full.
+     *
+     * @param enabled whether to try incremental passes
+     */
+    public void setIncrementalLayoutEnabled(boolean enabled) {
+        mIncrementalLayoutEnabled = enabled;
+    }
+
+    public boolean isIncrementalLayoutEnabled() {
+        return mIncrementalLayoutEnabled;
+    }
+
+    /**
+     * @return how many layout passes only re-placed the changed child and
+     * shifted its following siblings
+     */
+    public long getIncrementalLayoutCount() {
+        return mIncrementalLayoutCount;
+    }
+
+    /**
+     * @return how many child measures were avoided because the children
+     * matching our width could report their intrinsic size
+     */
+    public long getSavedMeasureCount() {
+        return mSavedMeasureCount;
+    }
+
+    /**
+     * Tries to re-measure only the child that requested layout, or that went
+     * from or to GONE.
+     *
+     * @return the index of the changed child, or -1 if a full pass is needed
+     */
+    private int measureIncrementally(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!mLastPassIncremental
+                || mMetricsStructureGeneration != mStructureGeneration
+                || mMetricsPaddingLeft != getPaddingLeft()
+                || mMetricsPaddingTop != getPaddingTop()
+                || mMetricsPaddingRight != getPaddingRight()
+                || mMetricsPaddingBottom != getPaddingBottom()
+                || mCachedWidthMeasureSpec != widthMeasureSpec
+                || mCachedHeightMeasureSpec != heightMeasureSpec
+                || mMetricsCount != getVirtualChildCount()) {
+            return -1;
+        }
+
+        final int count = mMetricsCount;
+        final int[] flags = mChildFlags;
+        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+
+        // Find the one child that asked for layout. Every sibling below it
+        // must be sized independently of where it starts.
+        int dirty = -1;
+        boolean toggled = false;
+        for (int i = 0; i < count; i++) {
+            final int childFlags = flags[i];
+            if ((childFlags & CHILD_NULL) != 0) {
+                continue;
+            }
+            final View child = getVirtualChildAt(i);
+            if (child == null || (childFlags & (CHILD_SKIPPED | CHILD_GONE)) == CHILD_SKIPPED) {
+                return -1;
+            }
+            final boolean wasGone = (childFlags & CHILD_GONE) != 0;
+            final boolean visibilityChanged = wasGone != (child.getVisibility() == GONE);
+            if (visibilityChanged || !wasGone && child.isLayoutRequested()) {
+                if (dirty >= 0) {
+                    return -1;
+                }
+                dirty = i;
+                toggled = visibilityChanged;
+            } else if (dirty >= 0 && !wasGone && heightMode != MeasureSpec.UNSPECIFIED
+                    && (childFlags & CHILD_FIXED_HEIGHT) == 0) {
+                return -1;
+            }
+        }
+        if (dirty < 0 || toggled && widthMode != MeasureSpec.EXACTLY) {
+            // Showing or hiding a child can change our width unless it is fixed.
+            return -1;
+        }
+
+        final View child = getVirtualChildAt(dirty);
+        final boolean wasGone = (flags[dirty] & CHILD_GONE) != 0;
+        final int oldWidth = wasGone ? 0
+                : mChildWidths[dirty] + mChildLeftMargins[dirty] + mChildRightMargins[dirty];
+        final int oldLength = wasGone ? 0 : mChildHeights[dirty] + mChildTopMargins[dirty]
+                + mChildBottomMargins[dirty] + mChildNextLocationOffsets[dirty];
+
+        int newLength = 0;
+        if (child.getVisibility() == GONE) {
+            // Hiding needs no measure; the child just stops taking space.
+            flags[dirty] = CHILD_SKIPPED | CHILD_GONE;
+        } else {
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.weight > 0 || widthMode != MeasureSpec.EXACTLY && lp.width == LayoutParams.MATCH_PARENT) {
+                return -1;
+            }
+
+            measureChildBeforeLayout(child, dirty, widthMeasureSpec, 0,
+                    heightMeasureSpec, mChildUsedHeights[dirty]);
+            recordChildParams(child, dirty, lp, mGravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK);
+            recordChildSize(child, dirty);
+            if (lp.height >= 0) {
+                flags[dirty] |= CHILD_FIXED_HEIGHT;
+            }
+
+            final int newWidth = mChildWidths[dirty] + mChildLeftMargins[dirty] + mChildRightMargins[dirty];
+            if (widthMode != MeasureSpec.EXACTLY && newWidth != oldWidth) {
+                // Our own width may follow this child; measure everyone again.
+                return -1;
+            }
+            newLength = mChildHeights[dirty] + mChildTopMargins[dirty]
+                    + mChildBottomMargins[dirty] + mChildNextLocationOffsets[dirty];
+        }
+
+        final int delta = newLength - oldLength;
+        if (delta != 0) {
+            for (int i = dirty + 1; i < count; i++) {
+                mChildUsedHeights[i] += delta;
+            }
+            mTotalLength += delta;
+        }
+        final int heightSize = Math.max(mTotalLength, getSuggestedMinimumHeight());
+        setMeasuredDimension(mCachedMeasuredWidth,
+                resolveSizeAndState(heightSize, heightMeasureSpec, 0));
+        return dirty;
     }
 
     void measureVertical(int widthMeasureSpec, int heightMeasureSpec) {
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY
+                && measureVerticalNegotiated(widthMeasureSpec, heightMeasureSpec)) {
+            return;
+        }
 
         mTotalLength = 0;
         int maxWidth = 0;
@@ -68,9 +439,11 @@ public class LinearLayout extends ViewGroup {
         float totalWeight = 0;
 
         final int count = getVirtualChildCount();
+        ensureMetricsCapacity(count);
 
         final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
         final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+        final int minorGravity = mGravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK;
 
         boolean matchWidth = false;
         boolean skippedMeasure = false;
@@ -81,16 +454,22 @@ public class LinearLayout extends ViewGroup {
         for (int i = 0; i < count; ++i) {
             final View child = getVirtualChildAt(i);
             if (child == null) {
-                mTotalLength += measureNullChild(i);
+                final int nullChildHeight = measureNullChild(i);
+                mTotalLength += nullChildHeight;
+                mChildFlags[i] = CHILD_NULL;
+                mChildHeights[i] = nullChildHeight;
                 continue;
             }
 
             if (child.getVisibility() == View.GONE) {
-                i += getChildrenSkipCount(child, i);
+                // Where this child would start if it became visible again.
+                mChildUsedHeights[i] = mTotalLength;
+                i = skipChildren(child, i);
                 continue;
             }
 
             final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            recordChildParams(child, i, lp, minorGravity);
 
             totalWeight += lp.weight;
 
@@ -119,8 +498,13 @@ public class LinearLayout extends ViewGroup {
                 final int usedHeight = totalWeight == 0 ? mTotalLength : 0;
                 measureChildBeforeLayout(child, i, widthMeasureSpec, 0,
                         heightMeasureSpec, usedHeight);
+                mChildUsedHeights[i] = usedHeight;
+                if (lp.height >= 0) {
+                    mChildFlags[i] |= CHILD_FIXED_HEIGHT;
+                }
 
                 final int childHeight = child.getMeasuredHeight();
+                recordChildSize(child, i);
                 if (useExcessSpace) {
                     // Restore the original height and record how much space
                     // we've allocated to excess-only children so that we can
@@ -184,11 +568,11 @@ public class LinearLayout extends ViewGroup {
                         matchWidthLocally ? margin : measuredWidth);
             }
 
-            i += getChildrenSkipCount(child, i);
+            i = skipChildren(child, i);
         }
 
         // Add in our padding
-//        mTotalLength += mPaddingTop + mPaddingBottom;
+        mTotalLength += getPaddingTop() + getPaddingBottom();
 
         int heightSize = mTotalLength;
 
@@ -199,12 +583,99 @@ public class LinearLayout extends ViewGroup {
         int heightSizeAndState = resolveSizeAndState(heightSize, heightMeasureSpec, 0);
         heightSize = heightSizeAndState & MEASURED_SIZE_MASK;
 
+        // Either expand children with weight to take up available space or
+        // shrink them if they extend beyond our current bounds. If we skipped
+        // measurement on any children, we need to measure them now.
+        int remainingExcess = heightSize - mTotalLength + consumedExcessSpace;
+        if (skippedMeasure || remainingExcess != 0 && totalWeight > 0.0f) {
+            LayoutTracer.begin(TRACE_WEIGHT_PASS);
+            float remainingWeightSum = totalWeight;
+
+            // The last weighted child gets whatever is left, so the rounding
+            // remainder always lands on the same view. Dividing by the float
+            // remainder of the weight sum could leave it a pixel short.
+            int lastWeighted = -1;
+            for (int i = count - 1; i >= 0; --i) {
+                final View child = getVirtualChildAt(i);
+                if (child != null && child.getVisibility() != View.GONE
+                        && ((LayoutParams) child.getLayoutParams()).weight > 0) {
+                    lastWeighted = i;
+                    break;
+                }
+            }
+
+            mTotalLength = 0;
+
+            for (int i = 0; i < count; ++i) {
+                final View child = getVirtualChildAt(i);
+                if (child == null || child.getVisibility() == View.GONE) {
+                    continue;
+                }
+
+                final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+                final float childWeight = lp.weight;
+                if (childWeight > 0) {
+                    final int share = i == lastWeighted ? remainingExcess
+                            : (int) (childWeight * remainingExcess / remainingWeightSum);
+                    remainingExcess -= share;
+                    remainingWeightSum -= childWeight;
+
+                    final int childHeight;
+                    if (lp.height == 0) {
+                        childHeight = share;
+                    } else {
+                        childHeight = child.getMeasuredHeight() + share;
+                    }
+
+                    // Children skipped in the first pass have never been
+                    // measured. Everyone else only needs another measure if
+                    // the distribution actually changed their height.
+                    final boolean measuredBefore = !(heightMode == MeasureSpec.EXACTLY && lp.height == 0);
+                    if (!measuredBefore || child.getMeasuredHeight() != childHeight) {
+                        final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(
+                                Math.max(0, childHeight), MeasureSpec.EXACTLY);
+                        final int childWidthMeasureSpec = getChildMeasureSpec(widthMeasureSpec,
+                                getPaddingLeft() + getPaddingRight() + lp.leftMargin + lp.rightMargin,
+                                lp.width);
+                        child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+
+                        // Child may now not fit in vertical dimension.
+                        childState = combineMeasuredStates(childState, child.getMeasuredState()
+                                & (MEASURED_STATE_MASK >> MEASURED_HEIGHT_STATE_SHIFT));
+                        recordChildSize(child, i);
+                    }
+                }
+
+                final int margin = lp.leftMargin + lp.rightMargin;
+                final int measuredWidth = child.getMeasuredWidth() + margin;
+                maxWidth = Math.max(maxWidth, measuredWidth);
+
+                boolean matchWidthLocally = widthMode != MeasureSpec.EXACTLY &&
+                        lp.width == LayoutParams.MATCH_PARENT;
+
+                alternativeMaxWidth = Math.max(alternativeMaxWidth,
+                        matchWidthLocally ? margin : measuredWidth);
+
+                allFillParent = allFillParent && lp.width == LayoutParams.MATCH_PARENT;
+
+                final int totalLength = mTotalLength;
+                mTotalLength = Math.max(totalLength, totalLength + child.getMeasuredHeight() +
+                        lp.topMargin + lp.bottomMargin + getNextLocationOffset(child));
+            }
+
+            // Add in our padding
+            mTotalLength += getPaddingTop() + getPaddingBottom();
+            LayoutTracer.end(TRACE_WEIGHT_PASS);
+        } else {
+            alternativeMaxWidth = Math.max(alternativeMaxWidth, weightedMaxWidth);
+        }
+
 
         if (!allFillParent && widthMode != MeasureSpec.EXACTLY) {
             maxWidth = alternativeMaxWidth;
         }
 
-        maxWidth += mPaddingLeft + mPaddingRight;
+        maxWidth += getPaddingLeft() + getPaddingRight();
 
         // Check against our minimum width
         maxWidth = Math.max(maxWidth, getSuggestedMinimumWidth());
@@ -213,11 +684,155 @@ public class LinearLayout extends ViewGroup {
                 heightSizeAndState);
 
         if (matchWidth) {
-            forceUniformWidth(count, heightMeasureSpec);
+            forceUniformWidth(count);
+        }
+
+        mLastPassIncremental = totalWeight == 0 && !matchWidth && !skippedMeasure;
+    }
+
+    /**
+     * Measures without the speculative pass on children that match our width.
+     * Our width is worked out first from the other children and from the
+     * intrinsic sizes reported through {@link IntrinsicSizes}; each matching
+     * child is then measured once, with the final width.
+     * <p>
+     * Only used when no child has weight, every visible child matching our
+     * width has a known intrinsic size, and the other children do not depend
+     * on the height left above them.
+     *
+     * @return false if the pass does not apply and nothing was measured
+     */
+    private boolean measureVerticalNegotiated(int widthMeasureSpec, int heightMeasureSpec) {
+        final int count = getVirtualChildCount();
+        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+
+        boolean hasMatchWidth = false;
+        boolean allFillParent = true;
+        for (int i = 0; i < count; ++i) {
+            final View child = getVirtualChildAt(i);
+            if (child == null || child.getVisibility() == View.GONE) {
+                continue;
+            }
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            if (lp.weight > 0) {
+                return false;
+            }
+            if (lp.width == LayoutParams.MATCH_PARENT) {
+                if (!IntrinsicSizes.hasIntrinsicSize(child)) {
+                    return false;
+                }
+                hasMatchWidth = true;
+            } else {
+                allFillParent = false;
+                if (heightMode != MeasureSpec.UNSPECIFIED && lp.height < 0) {
+                    return false;
+                }
+            }
+        }
+        if (!hasMatchWidth) {
+            return false;
         }
+
+        ensureMetricsCapacity(count);
+        final int[] flags = mChildFlags;
+        final int minorGravity = mGravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK;
+        int maxWidth = 0;
+        int childState = 0;
+        // The width a matching child would get from our spec in the normal pass.
+        final int availableWidth = widthMode == MeasureSpec.UNSPECIFIED
+                ? IntrinsicSizeProvider.UNBOUNDED
+                : Math.max(0, MeasureSpec.getSize(widthMeasureSpec)
+                        - getPaddingLeft() - getPaddingRight());
+
+        // Size ourselves. Only children that do not follow our width are measured.
+        for (int i = 0; i < count; ++i) {
+            final View child = getVirtualChildAt(i);
+            if (child == null) {
+                flags[i] = CHILD_NULL;
+                mChildHeights[i] = measureNullChild(i);
+                continue;
+            }
+            if (child.getVisibility() == View.GONE) {
+                i = skipChildren(child, i);
+                continue;
+            }
+
+            final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+            recordChildParams(child, i, lp, minorGravity);
+            if (lp.height >= 0) {
+                flags[i] |= CHILD_FIXED_HEIGHT;
+            }
+
+            final int margin = lp.leftMargin + lp.rightMargin;
+            if (lp.width == LayoutParams.MATCH_PARENT) {
+                flags[i] |= CHILD_MATCH_WIDTH;
+                if (allFillParent) {
+                    // Clamp like the AT_MOST spec the normal pass would give the child,
+                    // so overlong text does not mark us as too small.
+                    int intrinsicWidth = IntrinsicSizes.getMaxIntrinsicWidth(child,
+                            IntrinsicSizeProvider.UNBOUNDED);
+                    if (availableWidth != IntrinsicSizeProvider.UNBOUNDED) {
+                        intrinsicWidth = Math.min(intrinsicWidth, Math.max(0, availableWidth - margin));
+                    }
+                    maxWidth = Math.max(maxWidth, intrinsicWidth + margin);
+                } else {
+                    maxWidth = Math.max(maxWidth, margin);
+                }
+            } else {
+                // Either our height is unbounded or this child has a fixed
+                // height, so the space used above it makes no difference.
+                measureChildBeforeLayout(child, i, widthMeasureSpec, 0, heightMeasureSpec, 0);
+                recordChildSize(child, i);
+                maxWidth = Math.max(maxWidth, child.getMeasuredWidth() + margin);
+                childState = combineMeasuredStates(childState, child.getMeasuredState());
+            }
+
+            i = skipChildren(child, i);
+        }
+
+        maxWidth += getPaddingLeft() + getPaddingRight();
+        maxWidth = Math.max(maxWidth, getSuggestedMinimumWidth());
+        int widthSizeAndState = resolveSizeAndState(maxWidth, widthMeasureSpec, childState);
+        final int uniformMeasureSpec = MeasureSpec.makeMeasureSpec(
+                widthSizeAndState & MEASURED_SIZE_MASK, MeasureSpec.EXACTLY);
+
+        // Measure the children that match our width, once, in order.
+        mTotalLength = 0;
+        for (int i = 0; i < count; ++i) {
+            final int childFlags = flags[i];
+            if ((childFlags & CHILD_NULL) != 0) {
+                mTotalLength += mChildHeights[i];
+                continue;
+            }
+            mChildUsedHeights[i] = mTotalLength;
+            if ((childFlags & CHILD_SKIPPED) != 0) {
+                continue;
+            }
+            if ((childFlags & CHILD_MATCH_WIDTH) != 0) {
+                measureChildWithMargins(getVirtualChildAt(i), uniformMeasureSpec, 0,
+                        heightMeasureSpec, mTotalLength);
+                recordChildSize(getVirtualChildAt(i), i);
+                childState = combineMeasuredStates(childState, getVirtualChildAt(i).getMeasuredState());
+                mSavedMeasureCount++;
+            }
+            final int totalLength = mTotalLength;
+            mTotalLength = Math.max(totalLength, totalLength + mChildHeights[i]
+                    + mChildTopMargins[i] + mChildBottomMargins[i] + mChildNextLocationOffsets[i]);
+        }
+        mTotalLength += getPaddingTop() + getPaddingBottom();
+        // Our width is already fixed; only the state of the matching children is new.
+        widthSizeAndState |= childState & MEASURED_STATE_MASK;
+
+        final int heightSize = Math.max(mTotalLength, getSuggestedMinimumHeight());
+        setMeasuredDimension(widthSizeAndState, resolveSizeAndState(heightSize, heightMeasureSpec, 0));
+
+        mLastPassIncremental = false;
+        return true;
     }
 
-    private void forceUniformWidth(int count, int heightMeasureSpec) {
+    private void forceUniformWidth(int count) {
+        LayoutTracer.begin(TRACE_FORCE_UNIFORM_WIDTH);
         // Pretend that the linear layout has an exact size.
         int uniformMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredWidth(),
                 MeasureSpec.EXACTLY);
@@ -227,19 +842,96 @@ public class LinearLayout extends ViewGroup {
                 LinearLayout.LayoutParams lp = ((LinearLayout.LayoutParams) child.getLayoutParams());
 
                 if (lp.width == LayoutParams.MATCH_PARENT) {
-                    // Temporarily force children to reuse their old measured height
+                    final int childWidthMeasureSpec = getChildMeasureSpec(uniformMeasureSpec,
+                            getPaddingLeft() + getPaddingRight() + lp.leftMargin + lp.rightMargin,
+                            lp.width);
+                    if (child.getMeasuredWidth() == MeasureSpec.getSize(childWidthMeasureSpec)) {
+                        // Already as wide as it is going to be.
+                        continue;
+                    }
+
+                    // Force children to reuse their old measured height. This
+                    // goes through the spec, so lp.height is never touched.
                     // FIXME: this may not be right for something like wrapping text?
-                    int oldHeight = lp.height;
-                    lp.height = child.getMeasuredHeight();
+                    final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(
+                            child.getMeasuredHeight(), MeasureSpec.EXACTLY);
 
                     // Remeasue with new dimensions
-                    measureChildWithMargins(child, uniformMeasureSpec, 0, heightMeasureSpec, 0);
-                    lp.height = oldHeight;
+                    child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+                    recordChildSize(child, i);
                 }
             }
         }
+        LayoutTracer.end(TRACE_FORCE_UNIFORM_WIDTH);
+    }
+
+
+    private void ensureMetricsCapacity(int count) {
+        mMetricsCount = count;
+        if (mChildFlags.length >= count) {
+            return;
+        }
+        mChildFlags = new int[count];
+        mChildWidths = new int[count];
+        mChildHeights = new int[count];
+        mChildLeftMargins = new int[count];
+        mChildTopMargins = new int[count];
+        mChildRightMargins = new int[count];
+        mChildBottomMargins = new int[count];
+        mChildGravities = new int[count];
+        mChildLocationOffsets = new int[count];
+        mChildNextLocationOffsets = new int[count];
+        mChildUsedHeights = new int[count];
+
+        mIndexChildren = new int[count];
+        mIndexLefts = new int[count];
+        mIndexTops = new int[count];
+        mIndexRights = new int[count];
+        mIndexBottoms = new int[count];
+        mIndexMaxBottoms = new int[count];
+        mIndexMinTops = new int[count];
+        mChildCursors = new int[count];
+        mIndexCursorsAfter = new int[count];
+        mChildIndexEntries = new int[count];
     }
 
+    /**
+     * Marks the child at <code>index</code> and the children it asks to skip
+     * as not laid out.
+     *
+     * @return the index of the last skipped child
+     */
+    private int skipChildren(View child, int index) {
+        final int last = Math.min(index + getChildrenSkipCount(child, index), mMetricsCount - 1);
+        if (child.getVisibility() == View.GONE) {
+            mChildFlags[index] = CHILD_SKIPPED | CHILD_GONE;
+        }
+        for (int i = index + 1; i <= last; i++) {
+            mChildFlags[i] = CHILD_SKIPPED;
+        }
+        return last;
+    }
+
+    private void recordChildParams(View child, int index, LayoutParams lp, int minorGravity) {
+        mChildFlags[index] = 0;
+        mChildLeftMargins[index] = lp.leftMargin;
+        mChildTopMargins[index] = lp.topMargin;
+        mChildRightMargins[index] = lp.rightMargin;
+        mChildBottomMargins[index] = lp.bottomMargin;
+
+        final int gravity = lp.gravity < 0 ? minorGravity : lp.gravity;
+        final int layoutDirection = LayoutDirection.INHERIT;
+        mChildGravities[index] = Gravity.getAbsoluteGravity(gravity, layoutDirection)
+                & Gravity.HORIZONTAL_GRAVITY_MASK;
+
+        mChildLocationOffsets[index] = getLocationOffset(child);
+        mChildNextLocationOffsets[index] = getNextLocationOffset(child);
+    }
+
+    private void recordChildSize(View child, int index) {
+        mChildWidths[index] = child.getMeasuredWidth();
+        mChildHeights[index] = child.getMeasuredHeight();
+    }
 
     /**
      * <p>Returns the number of children to skip after measuring/laying out
@@ -304,74 +996,89 @@ public class LinearLayout extends ViewGroup {
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        layoutVertical(l, t, r, b);
+        LayoutTracer.begin(TRACE_LAYOUT);
+        if (mIncrementalChild >= 0 && mChildIndexValid && r - l == mLastLayoutWidth
+                && (mGravity & Gravity.VERTICAL_GRAVITY_MASK) == Gravity.TOP) {
+            layoutIncrementally(mIncrementalChild, r - l);
+        } else {
+            layoutVertical(l, t, r, b);
+        }
+        mIncrementalChild = -1;
+        mLayoutClean = true;
+        LayoutTracer.end(TRACE_LAYOUT);
     }
 
     void layoutVertical(int left, int top, int right, int bottom) {
-        final int paddingLeft = mPaddingLeft;
+        final int paddingLeft = getPaddingLeft();
 
         int childTop;
         int childLeft;
 
         // Where right end of child should go
         final int width = right - left;
-        int childRight = width - mPaddingRight;
+        int childRight = width - getPaddingRight();
 
         // Space available for child
-        int childSpace = width - paddingLeft - mPaddingRight;
-
-        final int count = getVirtualChildCount();
+        int childSpace = width - paddingLeft - getPaddingRight();
+
+        // Everything below was captured by measureVertical.
+        final int count = mMetricsCount;
+        final int[] flags = mChildFlags;
+        final int[] widths = mChildWidths;
+        final int[] heights = mChildHeights;
+        final int[] leftMargins = mChildLeftMargins;
+        final int[] topMargins = mChildTopMargins;
+        final int[] rightMargins = mChildRightMargins;
+        final int[] bottomMargins = mChildBottomMargins;
+        final int[] gravities = mChildGravities;
+        final int[] locationOffsets = mChildLocationOffsets;
+        final int[] nextLocationOffsets = mChildNextLocationOffsets;
 
         final int majorGravity = mGravity & Gravity.VERTICAL_GRAVITY_MASK;
-        final int minorGravity = mGravity & Gravity.RELATIVE_HORIZONTAL_GRAVITY_MASK;
 
         switch (majorGravity) {
             case Gravity.BOTTOM:
                 // mTotalLength contains the padding already
-                childTop = mPaddingTop + bottom - top - mTotalLength;
+                childTop = getPaddingTop() + bottom - top - mTotalLength;
                 break;
 
             // mTotalLength contains the padding already
             case Gravity.CENTER_VERTICAL:
-                childTop = mPaddingTop + (bottom - top - mTotalLength) / 2;
+                childTop = getPaddingTop() + (bottom - top - mTotalLength) / 2;
                 break;
 
             case Gravity.TOP:
             default:
-                childTop = mPaddingTop;
+                childTop = getPaddingTop();
                 break;
         }
 
-        for (int i = 0; i < count; i++) {
-            final View child = getVirtualChildAt(i);
-            if (child == null) {
-                childTop += measureNullChild(i);
-            } else if (child.getVisibility() != GONE) {
-                final int childWidth = child.getMeasuredWidth();
-                final int childHeight = child.getMeasuredHeight();
-
-                final LinearLayout.LayoutParams lp =
-                        (LinearLayout.LayoutParams) child.getLayoutParams();
+        int indexCount = 0;
+        int maxBottom = Integer.MIN_VALUE;
 
-                int gravity = lp.gravity;
-                if (gravity < 0) {
-                    gravity = minorGravity;
-                }
-                final int layoutDirection = LayoutDirection.INHERIT;
-                final int absoluteGravity = Gravity.getAbsoluteGravity(gravity, layoutDirection);
-                switch (absoluteGravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+        for (int i = 0; i < count; i++) {
+            final int childFlags = flags[i];
+            mChildIndexEntries[i] = -1;
+            mChildCursors[i] = childTop;
+            if ((childFlags & CHILD_NULL) != 0) {
+                childTop += heights[i];
+            } else if ((childFlags & CHILD_SKIPPED) == 0) {
+                final int childWidth = widths[i];
+                final int childHeight = heights[i];
+
+                switch (gravities[i]) {
                     case Gravity.CENTER_HORIZONTAL:
                         childLeft = paddingLeft + ((childSpace - childWidth) / 2)
-                                + lp.leftMargin - lp.rightMargin;
+                                + leftMargins[i] - rightMargins[i];
                         break;
 
                     case Gravity.RIGHT:
-                        childLeft = childRight - childWidth - lp.rightMargin;
+                        childLeft = childRight - childWidth - rightMargins[i];
                         break;
 
                     case Gravity.LEFT:
                     default:
-                        childLeft = paddingLeft + lp.leftMargin;
+                        childLeft = paddingLeft + leftMargins[i];
                         break;
                 }
 
@@ -379,14 +1086,296 @@ public class LinearLayout extends ViewGroup {
 //                    childTop += mDividerHeight;
 //                }
 
-                childTop += lp.topMargin;
-                setChildFrame(child, childLeft, childTop + getLocationOffset(child),
+                childTop += topMargins[i];
+                final int frameTop = childTop + locationOffsets[i];
+                setChildFrame(getVirtualChildAt(i), childLeft, frameTop,
                         childWidth, childHeight);
-                childTop += childHeight + lp.bottomMargin + getNextLocationOffset(child);
+                childTop += childHeight + bottomMargins[i] + nextLocationOffsets[i];
+
+                maxBottom = Math.max(maxBottom, frameTop + childHeight);
+                mIndexCursorsAfter[indexCount] = childTop;
+                mChildIndexEntries[i] = indexCount;
+                mIndexChildren[indexCount] = i;
+                mIndexLefts[indexCount] = childLeft;
+                mIndexTops[indexCount] = frameTop;
+                mIndexRights[indexCount] = childLeft + childWidth;
+                mIndexBottoms[indexCount] = frameTop + childHeight;
+                mIndexMaxBottoms[indexCount] = maxBottom;
+                indexCount++;
+            }
+        }
 
-                i += getChildrenSkipCount(child, i);
+        int minTop = Integer.MAX_VALUE;
+        for (int k = indexCount - 1; k >= 0; k--) {
+            minTop = Math.min(minTop, mIndexTops[k]);
+            mIndexMinTops[k] = minTop;
+        }
+        mIndexCount = indexCount;
+        mChildIndexValid = true;
+        mLastLayoutWidth = width;
+    }
+
+    /**
+     * Places the child changed by {@link #measureIncrementally(int, int)} and
+     * moves every laid out child after it by the change in its length. The
+     * moved children keep their size, so they are offset rather than laid
+     * out again.
+     */
+    private void layoutIncrementally(int childIndex, int width) {
+        int entry = mChildIndexEntries[childIndex];
+        final boolean wasLaidOut = entry >= 0;
+        final boolean visible = (mChildFlags[childIndex] & CHILD_SKIPPED) == 0;
+        final int cursor = mChildCursors[childIndex];
+        final int oldCursorAfter = wasLaidOut ? mIndexCursorsAfter[entry] : cursor;
+
+        int cursorAfter = cursor;
+        int firstShifted;
+        if (visible) {
+            final int childWidth = mChildWidths[childIndex];
+            final int childHeight = mChildHeights[childIndex];
+            final int paddingLeft = getPaddingLeft();
+            final int paddingRight = getPaddingRight();
+
+            final int childLeft;
+            switch (mChildGravities[childIndex]) {
+                case Gravity.CENTER_HORIZONTAL:
+                    childLeft = paddingLeft + ((width - paddingLeft - paddingRight - childWidth) / 2)
+                            + mChildLeftMargins[childIndex] - mChildRightMargins[childIndex];
+                    break;
+
+                case Gravity.RIGHT:
+                    childLeft = width - paddingRight - childWidth - mChildRightMargins[childIndex];
+                    break;
+
+                case Gravity.LEFT:
+                default:
+                    childLeft = paddingLeft + mChildLeftMargins[childIndex];
+                    break;
+            }
+
+            final int frameTop = cursor + mChildTopMargins[childIndex]
+                    + mChildLocationOffsets[childIndex];
+            setChildFrame(getVirtualChildAt(childIndex), childLeft, frameTop, childWidth, childHeight);
+            cursorAfter = frameTop - mChildLocationOffsets[childIndex] + childHeight
+                    + mChildBottomMargins[childIndex] + mChildNextLocationOffsets[childIndex];
+
+            if (!wasLaidOut) {
+                entry = insertIndexEntry(childIndex);
+            }
+            mIndexLefts[entry] = childLeft;
+            mIndexTops[entry] = frameTop;
+            mIndexRights[entry] = childLeft + childWidth;
+            mIndexBottoms[entry] = frameTop + childHeight;
+            mIndexCursorsAfter[entry] = cursorAfter;
+            firstShifted = entry + 1;
+        } else {
+            if (wasLaidOut) {
+                removeIndexEntry(entry);
+            } else {
+                entry = findIndexEntryAfter(childIndex);
+            }
+            firstShifted = entry;
+        }
+
+        final int shift = cursorAfter - oldCursorAfter;
+        final int count = mIndexCount;
+        if (shift != 0) {
+            for (int k = firstShifted; k < count; k++) {
+                getVirtualChildAt(mIndexChildren[k]).offsetTopAndBottom(shift);
+                mIndexTops[k] += shift;
+                mIndexBottoms[k] += shift;
+                mIndexCursorsAfter[k] += shift;
+            }
+            for (int i = childIndex + 1; i < mMetricsCount; i++) {
+                mChildCursors[i] += shift;
+            }
+        }
+
+        // Bring the running extremes back in line with the moved frames.
+        int maxBottom = entry > 0 ? mIndexMaxBottoms[entry - 1] : Integer.MIN_VALUE;
+        for (int k = entry; k < count; k++) {
+            maxBottom = Math.max(maxBottom, mIndexBottoms[k]);
+            mIndexMaxBottoms[k] = maxBottom;
+        }
+        int minTop = Integer.MAX_VALUE;
+        for (int k = count - 1; k >= 0; k--) {
+            minTop = Math.min(minTop, mIndexTops[k]);
+            if (k < entry && mIndexMinTops[k] == minTop) {
+                break;
+            }
+            mIndexMinTops[k] = minTop;
+        }
+
+        mIncrementalLayoutCount++;
+        invalidate();
+    }
+
+    /**
+     * @return the first index entry whose child comes after <code>childIndex</code>
+     */
+    private int findIndexEntryAfter(int childIndex) {
+        final int[] children = mIndexChildren;
+        int low = 0;
+        int high = mIndexCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (children[mid] > childIndex) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int insertIndexEntry(int childIndex) {
+        final int entry = findIndexEntryAfter(childIndex);
+        final int moved = mIndexCount - entry;
+        System.arraycopy(mIndexChildren, entry, mIndexChildren, entry + 1, moved);
+        System.arraycopy(mIndexLefts, entry, mIndexLefts, entry + 1, moved);
+        System.arraycopy(mIndexTops, entry, mIndexTops, entry + 1, moved);
+        System.arraycopy(mIndexRights, entry, mIndexRights, entry + 1, moved);
+        System.arraycopy(mIndexBottoms, entry, mIndexBottoms, entry + 1, moved);
+        System.arraycopy(mIndexCursorsAfter, entry, mIndexCursorsAfter, entry + 1, moved);
+        System.arraycopy(mIndexMaxBottoms, entry, mIndexMaxBottoms, entry + 1, moved);
+        System.arraycopy(mIndexMinTops, entry, mIndexMinTops, entry + 1, moved);
+        mIndexCount++;
+        mIndexChildren[entry] = childIndex;
+        for (int k = entry; k < mIndexCount; k++) {
+            mChildIndexEntries[mIndexChildren[k]] = k;
+        }
+        return entry;
+    }
+
+    private void removeIndexEntry(int entry) {
+        mChildIndexEntries[mIndexChildren[entry]] = -1;
+        final int moved = mIndexCount - entry - 1;
+        System.arraycopy(mIndexChildren, entry + 1, mIndexChildren, entry, moved);
+        System.arraycopy(mIndexLefts, entry + 1, mIndexLefts, entry, moved);
+        System.arraycopy(mIndexTops, entry + 1, mIndexTops, entry, moved);
+        System.arraycopy(mIndexRights, entry + 1, mIndexRights, entry, moved);
+        System.arraycopy(mIndexBottoms, entry + 1, mIndexBottoms, entry, moved);
+        System.arraycopy(mIndexCursorsAfter, entry + 1, mIndexCursorsAfter, entry, moved);
+        System.arraycopy(mIndexMaxBottoms, entry + 1, mIndexMaxBottoms, entry, moved);
+        System.arraycopy(mIndexMinTops, entry + 1, mIndexMinTops, entry, moved);
+        mIndexCount--;
+        for (int k = entry; k < mIndexCount; k++) {
+            mChildIndexEntries[mIndexChildren[k]] = k;
+        }
+    }
+
+    /**
+     * When enabled, drawing looks children up through the frames recorded by
+     * the last layout pass instead of visiting every child. Only the children
+     * overlapping the canvas clip are drawn, in child order, so this suits
+     * long plain lists; children that are translated outside their frames or
+     * rely on elevation ordering should leave it off. Touch events always go
+     * through the regular ViewGroup dispatch.
+     *
+     * @param enabled whether to use the child index
+     */
+    public void setChildIndexEnabled(boolean enabled) {
+        mChildIndexEnabled = enabled;
+        invalidate();
+    }
+
+    public boolean isChildIndexEnabled() {
+        return mChildIndexEnabled;
+    }
+
+    private boolean canUseChildIndex() {
+        return mChildIndexEnabled && mChildIndexValid
+                && getLayoutTransition() == null
+                && getLayoutAnimation() == null
+                && !isChildrenDrawingOrderEnabled()
+                && !hasLeavingChildren();
+    }
+
+    private boolean hasLeavingChildren() {
+        if (!mTransitioningChildren.isEmpty()) {
+            return true;
+        }
+        for (int i = mRemovedAnimatingChildren.size() - 1; i >= 0; i--) {
+            final Animation animation = mRemovedAnimatingChildren.get(i).getAnimation();
+            if (animation == null || animation.hasEnded()) {
+                mRemovedAnimatingChildren.remove(i);
+            }
+        }
+        return !mRemovedAnimatingChildren.isEmpty();
+    }
+
+    /**
+     * @return the first index entry whose frame may reach below <code>y</code>
+     */
+    private int firstIndexEndingAfter(int y) {
+        final int[] maxBottoms = mIndexMaxBottoms;
+        int low = 0;
+        int high = mIndexCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (maxBottoms[mid] > y) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the last index entry whose frame may start above <code>y</code>
+     */
+    private int lastIndexStartingBefore(int y) {
+        final int[] minTops = mIndexMinTops;
+        int low = 0;
+        int high = mIndexCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (minTops[mid] < y) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low - 1;
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        LayoutTracer.begin(TRACE_DRAW);
+        if (!canUseChildIndex()) {
+            super.dispatchDraw(canvas);
+            LayoutTracer.end(TRACE_DRAW);
+            return;
+        }
+
+        final int saveCount = canvas.save();
+        final boolean clipToPadding = Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP
+                || getClipToPadding();
+        if (clipToPadding) {
+            canvas.clipRect(getScrollX() + getPaddingLeft(), getScrollY() + getPaddingTop(),
+                    getScrollX() + getRight() - getLeft() - getPaddingRight(),
+                    getScrollY() + getBottom() - getTop() - getPaddingBottom());
+        }
+
+        final Rect clip = mClipBounds;
+        if (canvas.getClipBounds(clip)) {
+            final long drawingTime = getDrawingTime();
+            final int[] tops = mIndexTops;
+            final int[] bottoms = mIndexBottoms;
+            final int last = lastIndexStartingBefore(clip.bottom);
+            for (int k = firstIndexEndingAfter(clip.top); k <= last; k++) {
+                if (bottoms[k] <= clip.top || tops[k] >= clip.bottom) {
+                    continue;
+                }
+                final View child = getVirtualChildAt(mIndexChildren[k]);
+                if (child.getVisibility() == VISIBLE || child.getAnimation() != null) {
+                    drawChild(canvas, child, drawingTime);
+                }
             }
         }
+        canvas.restoreToCount(saveCount);
+        LayoutTracer.end(TRACE_DRAW);
     }
 
     private void setChildFrame(View child, int left, int top, int width, int height) {
@@ -0,0 +1,119 @@
+package com.cry.copylinearlayout
+
+import android.graphics.*
+import android.util.LruCache
+
+/**
+ * 矩形（可以带圆角）的阴影，做成一张很小的九宫格
+ *
+ * 模糊过的矩形，离开角之后，沿着边的方向每一行/每一列都是一样的
+ * 所以只模糊一个 (边框 * 2 + 1) 见方的小矩形，画的时候把中间那一个像素拉伸到child的大小
+ * 模糊的代价就和child的大小无关了
+ *
+ * |<- padding ->|<- corner + padding ->| 1 |<- corner + padding ->|<- padding ->|
+ *   阴影扩散出去的部分     矩形里面受到角和模糊影响的部分   拉伸
+ */
+internal class NinePatchShadow private constructor(
+        val bitmap: Bitmap,
+        //画的时候往四周扩出去多少
+        val padding: Int,
+        //九宫格四周不拉伸的宽度
+        private val border: Int) {
+
+    //九宫格的三段，复用，不在画的时候new
+    private val srcX = IntArray(4)
+    private val srcY = IntArray(4)
+    private val dstX = IntArray(4)
+    private val dstY = IntArray(4)
+    private val src = Rect()
+    private val dst = Rect()
+
+    init {
+        setStops(srcX, 0, bitmap.width)
+        setStops(srcY, 0, bitmap.height)
+    }
+
+    /**
+     * child太小的话，四周不拉伸的部分会重叠，就不能用九宫格了
+     */
+    fun canDraw(width: Int, height: Int): Boolean =
+            width + padding * 2 >= border * 2 && height + padding * 2 >= border * 2
+
+    /**
+     * 在child的frame四周画阴影，bitmap是ALPHA_8的，颜色由paint给
+     */
+    fun draw(canvas: Canvas, left: Int, top: Int, right: Int, bottom: Int, paint: Paint) {
+        setStops(dstX, left - padding, right + padding)
+        setStops(dstY, top - padding, bottom + padding)
+        for (row in 0 until 3) {
+            if (dstY[row] == dstY[row + 1]) {
+                continue
+            }
+            for (column in 0 until 3) {
+                if (dstX[column] == dstX[column + 1]) {
+                    continue
+                }
+                src.set(srcX[column], srcY[row], srcX[column + 1], srcY[row + 1])
+                dst.set(dstX[column], dstY[row], dstX[column + 1], dstY[row + 1])
+                canvas.drawBitmap(bitmap, src, dst, paint)
+            }
+        }
+    }
+
+    private fun setStops(stops: IntArray, start: Int, end: Int) {
+        stops[0] = start
+        stops[1] = start + border
+        stops[2] = end - border
+        stops[3] = end
+    }
+
+    /**
+     * 进程里面所有的SimpleLinearLayout共用，按 (模糊半径, 圆角) 缓存，有内存上限
+     * bitmap只有alpha，颜色是画的时候上的，所以颜色不放进key
+     *
+     * 只在主线程用
+     */
+    companion object {
+        private const val MAX_BYTES = 256 * 1024
+
+        private data class Key(var blurRadius: Float, var cornerRadius: Float)
+
+        //查找的时候复用这个key
+        private val sLookupKey = Key(0f, 0f)
+
+        private val sCache = object : LruCache<Key, NinePatchShadow>(MAX_BYTES) {
+            override fun sizeOf(key: Key, value: NinePatchShadow): Int = value.bitmap.byteCount
+        }
+
+        fun get(blurRadius: Float, cornerRadius: Float): NinePatchShadow {
+            val key = sLookupKey
+            key.blurRadius = blurRadius
+            key.cornerRadius = cornerRadius
+            val cached = sCache.get(key)
+            if (cached != null) {
+                return cached
+            }
+            val shadow = create(blurRadius, cornerRadius)
+            sCache.put(key.copy(), shadow)
+            return shadow
+        }
+
+        fun evictAll() {
+            sCache.evictAll()
+        }
+
+        private fun create(blurRadius: Float, cornerRadius: Float): NinePatchShadow {
+            val padding = Math.ceil(blurRadius.toDouble()).toInt()
+            val border = padding + Math.ceil(cornerRadius.toDouble()).toInt() + padding
+            val size = border * 2 + 1
+            val bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ALPHA_8)
+
+            val blurPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+            blurPaint.maskFilter = BlurMaskFilter(blurRadius, BlurMaskFilter.Blur.NORMAL)
+            val rect = RectF(padding.toFloat(), padding.toFloat(),
+                    (size - padding).toFloat(), (size - padding).toFloat())
+            Canvas(bitmap).drawRoundRect(rect, cornerRadius, cornerRadius, blurPaint)
+            return NinePatchShadow(bitmap, padding, border)
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.cry.copylinearlayout
+
+import android.graphics.*
+import android.util.LruCache
+
+/**
+ * 模糊好的阴影bitmap的LRU缓存
+ *
+ * 1. BlurMaskFilter 只有软件绘制才支持，所以模糊都画在自己new出来的Canvas(bitmap)上，这个canvas一直都是软件的
+ * 2. bitmap是ALPHA_8的，里面只有alpha。画到屏幕上的时候颜色由paint给，硬件加速的canvas也可以直接画
+ * 3. key是 (outline的hash, 宽, 高, 模糊半径)。颜色是画的时候才上的，所以不放进key里面，不同颜色的阴影可以共用一张bitmap
+ *    hash里有取样点取整之后的位置，镜像的形状key不一样，不会互相把对方挤出去
+ *    hash还是可能撞，所以缓存里还存了 [Outline]，命中的时候再比一次形状
+ * 4. 只有key是新的时候才会去模糊一次
+ *
+ * 只在主线程用。要在别的线程模糊的话，用自己的 [Blur]，模糊好了再回到主线程 [put] 进来
+ */
+internal class ShadowCache(maxBytes: Int) {
+
+    private data class Key(var hash: Long, var width: Int, var height: Int, var radius: Float)
+
+    //outline是null的话就是矩形
+    private class Entry(val bitmap: Bitmap, val outline: Outline?)
+
+    //查找的时候复用这个key，放进缓存的时候才copy一份
+    private val mLookupKey = Key(0L, 0, 0, 0f)
+
+    private val mCache = object : LruCache<Key, Entry>(maxBytes) {
+        override fun sizeOf(key: Key, value: Entry): Int = value.bitmap.byteCount
+    }
+
+    private val mBlur = Blur()
+
+    //算outline的时候复用
+    private val mLookupOutline = Outline()
+    private val mBounds = RectF()
+    private val mPathMeasure = PathMeasure()
+    private val mPos = FloatArray(2)
+
+    //真的去模糊了几次
+    var blurCount = 0L
+        private set
+
+    //阴影会往外扩散，bitmap四周要多留出来的大小。画的时候也要往左上偏移这么多
+    fun padding(radius: Float): Int = Companion.padding(radius)
+
+    //矩形的阴影
+    fun getRect(width: Int, height: Int, radius: Float): Bitmap =
+            get(null, width, height, radius, null)
+
+    //path的阴影，path的坐标是以(0,0)为左上角的
+    fun getPath(path: Path, width: Int, height: Int, radius: Float): Bitmap =
+            get(outline(path), width, height, radius, path)
+
+    /**
+     * 算出path的形状。返回的对象是复用的，下一次调用就变了，要留着的话 [Outline.copy] 一份
+     */
+    fun outline(path: Path): Outline {
+        mLookupOutline.set(path, mPathMeasure, mBounds, mPos)
+        return mLookupOutline
+    }
+
+    //只查缓存，没有的话不模糊。outline是null的话查矩形
+    fun peek(outline: Outline?, width: Int, height: Int, radius: Float): Bitmap? {
+        val entry = mCache.get(lookupKey(outline, width, height, radius)) ?: return null
+        if (outline != null && (entry.outline == null || !entry.outline.sameAs(outline))) {
+            //hash撞了，不是同一个形状
+            return null
+        }
+        return entry.bitmap
+    }
+
+    //别的地方模糊好的bitmap放进来。outline会被缓存留着，之后不能再改
+    fun put(outline: Outline?, width: Int, height: Int, radius: Float, bitmap: Bitmap) {
+        mCache.put(lookupKey(outline, width, height, radius).copy(), Entry(bitmap, outline))
+    }
+
+    fun evictAll() {
+        mCache.evictAll()
+    }
+
+    private fun lookupKey(outline: Outline?, width: Int, height: Int, radius: Float): Key {
+        val key = mLookupKey
+        key.hash = outline?.hash ?: RECT_HASH
+        key.width = width
+        key.height = height
+        key.radius = radius
+        return key
+    }
+
+    private fun get(outline: Outline?, width: Int, height: Int, radius: Float, path: Path?): Bitmap {
+        val cached = peek(outline, width, height, radius)
+        if (cached != null) {
+            return cached
+        }
+
+        val bitmap = mBlur.rasterize(path, width, height, radius)
+        blurCount++
+
+        put(outline?.copy(), width, height, radius, bitmap)
+        return bitmap
+    }
+
+    /**
+     * Path没有equals。用每一段轮廓上等距取的 [SAMPLES_PER_CONTOUR] 个点和填充方式来代表它的形状
+     * 朝上和朝下的三角形、左右镜像的斜边，边界和周长都一样，但是点的位置不一样
+     * hash用边界、填充方式、轮廓长度和取整到像素的点，用来找缓存；真的是不是同一个形状，要用 [sameAs] 比点
+     * 点要放进hash：不然镜像的形状key一样，put的时候会把对方从LRU里挤掉，两个来回画就每次都要重新模糊
+     */
+    class Outline {
+        private var mPoints = FloatArray(SAMPLES_PER_CONTOUR * 2)
+        //mPoints里用到的个数
+        private var mSize = 0
+        private var mFillType = 0
+
+        var hash = 0L
+            private set
+
+        internal fun set(path: Path, measure: PathMeasure, bounds: RectF, pos: FloatArray) {
+            path.computeBounds(bounds, true)
+            mFillType = path.fillType.ordinal
+            var hash = 17L
+            hash = hash * 31 + Math.round(bounds.left)
+            hash = hash * 31 + Math.round(bounds.top)
+            hash = hash * 31 + Math.round(bounds.right)
+            hash = hash * 31 + Math.round(bounds.bottom)
+            hash = hash * 31 + mFillType
+
+            var size = 0
+            measure.setPath(path, false)
+            do {
+                val length = measure.length
+                if (mPoints.size < size + SAMPLES_PER_CONTOUR * 2) {
+                    mPoints = mPoints.copyOf(Math.max(mPoints.size * 2, size + SAMPLES_PER_CONTOUR * 2))
+                }
+                for (i in 0 until SAMPLES_PER_CONTOUR) {
+                    if (!measure.getPosTan(length * i / SAMPLES_PER_CONTOUR, pos, null)) {
+                        pos[0] = 0f
+                        pos[1] = 0f
+                    }
+                    mPoints[size++] = pos[0]
+                    mPoints[size++] = pos[1]
+                    hash = hash * 31 + Math.round(pos[0])
+                    hash = hash * 31 + Math.round(pos[1])
+                }
+                hash = hash * 31 + Math.round(length)
+            } while (measure.nextContour())
+            mSize = size
+            this.hash = if (hash == RECT_HASH) hash + 1 else hash
+        }
+
+        fun copy(): Outline {
+            val copy = Outline()
+            copy.mPoints = mPoints.copyOf(mSize)
+            copy.mSize = mSize
+            copy.mFillType = mFillType
+            copy.hash = hash
+            return copy
+        }
+
+        //差不到半个像素的形状，模糊出来看不出区别
+        fun sameAs(other: Outline): Boolean {
+            if (mFillType != other.mFillType || mSize != other.mSize) {
+                return false
+            }
+            for (i in 0 until mSize) {
+                if (Math.abs(mPoints[i] - other.mPoints[i]) > TOLERANCE) {
+                    return false
+                }
+            }
+            return true
+        }
+    }
+
+    /**
+     * 真正去模糊的地方。里面的paint不是线程安全的，一个线程用一个
+     */
+    class Blur {
+        private val mBlurPaint = Paint(Paint.ANTI_ALIAS_FLAG)
+        private var mBlurRadius = 0f
+
+        //path是null的话就是矩形
+        fun rasterize(path: Path?, width: Int, height: Int, radius: Float): Bitmap {
+            val padding = padding(radius)
+            val bitmap = Bitmap.createBitmap(width + padding * 2, height + padding * 2,
+                    Bitmap.Config.ALPHA_8)
+            if (mBlurRadius != radius || mBlurPaint.maskFilter == null) {
+                mBlurRadius = radius
+                mBlurPaint.maskFilter = BlurMaskFilter(radius, BlurMaskFilter.Blur.NORMAL)
+            }
+            val canvas = Canvas(bitmap)
+            canvas.translate(padding.toFloat(), padding.toFloat())
+            if (path == null) {
+                canvas.drawRect(0f, 0f, width.toFloat(), height.toFloat(), mBlurPaint)
+            } else {
+                canvas.drawPath(path, mBlurPaint)
+            }
+            return bitmap
+        }
+    }
+
+    companion object {
+        private const val RECT_HASH = 0L
+        private const val SAMPLES_PER_CONTOUR = 16
+        private const val TOLERANCE = 0.5f
+
+        fun padding(radius: Float): Int = Math.ceil(radius.toDouble()).toInt()
+    }
+}
@@ -0,0 +1,127 @@
+package com.cry.copylinearlayout
+
+import android.graphics.Bitmap
+import android.graphics.Path
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.Looper
+import android.os.Process
+import com.cry.layoutengine.LayoutTracer
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 在后台线程模糊阴影
+ *
+ * 大的形状模糊一次，在低端机上要好几毫秒，放在onDraw里面会掉帧
+ * 主线程把outline复制一份，和宽高一起做成一个不会再变的 [Request] 交过来，
+ * 这里在专门的线程上模糊好，再回到主线程交给 [Callback]
+ *
+ * 所有的SimpleLinearLayout共用一个线程
+ */
+object ShadowRasterizer {
+    private val TRACE_RASTERIZE = LayoutTracer.register("ShadowRasterizer.rasterize")
+
+    private const val QUEUED = 0
+    private const val RUNNING = 1
+    private const val DONE = 2
+    private const val CANCELLED = 3
+
+    //模糊好了，在主线程回调
+    internal interface Callback {
+        fun onShadowReady(request: Request, bitmap: Bitmap)
+    }
+
+    /**
+     * 一次模糊请求。path是复制出来的，交出去之后谁都不会再改它
+     */
+    internal class Request(val outline: ShadowCache.Outline,
+                           private val path: Path,
+                           val width: Int,
+                           val height: Int,
+                           val radius: Float,
+                           //回调的时候原样带回去
+                           val tag: Any?,
+                           private val callback: Callback) : Runnable {
+        private val state = AtomicInteger(QUEUED)
+        private val submitTime = System.nanoTime()
+
+        val isCancelled: Boolean
+            get() = state.get() == CANCELLED
+
+        //在后台线程跑
+        override fun run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return
+            }
+            queueDepth.decrementAndGet()
+            LayoutTracer.begin(TRACE_RASTERIZE)
+            val bitmap = blur.rasterize(path, width, height, radius)
+            LayoutTracer.end(TRACE_RASTERIZE)
+            mainHandler.post {
+                //模糊的时候被取消了，结果就不要了
+                if (state.compareAndSet(RUNNING, DONE)) {
+                    val latency = System.nanoTime() - submitTime
+                    completedCount.incrementAndGet()
+                    totalLatencyNanos.addAndGet(latency)
+                    lastLatencyNanos = latency
+                    callback.onShadowReady(this, bitmap)
+                }
+            }
+        }
+
+        /**
+         * 只在主线程调用。还在排队的直接从队列里拿掉
+         */
+        fun cancel() {
+            if (state.compareAndSet(QUEUED, CANCELLED)) {
+                queueDepth.decrementAndGet()
+                workerHandler.removeCallbacks(this)
+                cancelledCount.incrementAndGet()
+            } else if (state.compareAndSet(RUNNING, CANCELLED)) {
+                cancelledCount.incrementAndGet()
+            }
+        }
+    }
+
+    private val worker: HandlerThread by lazy {
+        val thread = HandlerThread("ShadowRasterizer", Process.THREAD_PRIORITY_BACKGROUND)
+        thread.start()
+        thread
+    }
+    private val workerHandler: Handler by lazy { Handler(worker.looper) }
+    private val mainHandler = Handler(Looper.getMainLooper())
+
+    //只在worker线程用
+    private val blur = ShadowCache.Blur()
+
+    private val queueDepth = AtomicInteger()
+    private val completedCount = AtomicLong()
+    private val cancelledCount = AtomicLong()
+    private val totalLatencyNanos = AtomicLong()
+    @Volatile
+    private var lastLatencyNanos = 0L
+
+    internal fun submit(request: Request) {
+        queueDepth.incrementAndGet()
+        workerHandler.post(request)
+    }
+
+    //还在排队等着模糊的请求数
+    fun getQueueDepth(): Int = queueDepth.get()
+
+    //已经交回主线程的请求数
+    fun getCompletedCount(): Long = completedCount.get()
+
+    //排队或者模糊的时候被取消的请求数
+    fun getCancelledCount(): Long = cancelledCount.get()
+
+    //最后一个请求从提交到回到主线程用了多久
+    fun getLastLatencyNanos(): Long = lastLatencyNanos
+
+    //从提交到回到主线程的平均时间
+    fun getAverageLatencyNanos(): Long {
+        val completed = completedCount.get()
+        return if (completed == 0L) 0L else totalLatencyNanos.get() / completed
+    }
+}
@@ -5,6 +5,8 @@ import android.graphics.*
 import android.util.AttributeSet
 import android.view.View
 import android.view.ViewGroup
+import android.view.ViewTreeObserver
+import com.cry.layoutengine.LayoutTracer
 import com.github.florent37.shapeofview.ShapeOfView
 
 /**
@@ -21,6 +23,20 @@ class SimpleLinearLayout : ViewGroup {
     companion object {
         //child的高度和宽度都加上这个
         const val PADDING_INT = 10 / 2
+
+        //阴影的模糊半径
+        private const val SHADOW_RADIUS = PADDING_INT * 3f / 2f
+        //阴影缓存最多占用的内存
+        private const val SHADOW_CACHE_BYTES = 2 * 1024 * 1024
+        //阴影会画到child外面多远，child的位置往外扩这么多就是阴影的范围
+        private val SHADOW_OUTSET = PADDING_INT + Math.ceil(SHADOW_RADIUS.toDouble()).toInt()
+
+        //LayoutTracer里面记录的span
+        private val TRACE_MEASURE = LayoutTracer.register("SimpleLinearLayout.onMeasure")
+        private val TRACE_LAYOUT = LayoutTracer.register("SimpleLinearLayout.onLayout")
+        private val TRACE_DRAW = LayoutTracer.register("SimpleLinearLayout.onDraw")
+        private val TRACE_WEIGHT_PASS = LayoutTracer.register("SimpleLinearLayout.weightPass")
+        private val TRACE_FORCE_UNIFORM_WIDTH = LayoutTracer.register("SimpleLinearLayout.forceUniformWidth")
     }
 
     constructor(context: Context) : super(context) {
@@ -36,57 +52,302 @@ class SimpleLinearLayout : ViewGroup {
     }
 
     var paint = Paint()
+
+    //模糊好的阴影。画的时候只是贴一张ALPHA_8的bitmap，所以不用再关掉硬件加速
+    private val shadowCache = ShadowCache(SHADOW_CACHE_BYTES)
+
     private fun initDrawPaints(context: Context) {
         setWillNotDraw(false)
 
+        //ALPHA_8的bitmap画出来就是paint的颜色
         paint.color = Color.RED
 //        paint.setShadowLayer(10f,2f,2f,Color.RED)
-        paint.maskFilter = BlurMaskFilter(PADDING_INT * 3f / 2f, BlurMaskFilter.Blur.NORMAL)
-
-        //硬件加速
-        setLayerType(LAYER_TYPE_SOFTWARE, paint)
     }
 
     override fun onDraw(canvas: Canvas) {
+        LayoutTracer.begin(TRACE_DRAW)
         super.onDraw(canvas)
-        //得到每个ziView。在其四周画方框
+        drawShadows(canvas)
+        LayoutTracer.end(TRACE_DRAW)
+    }
+
+    /**
+     * 每个child上一次算好的阴影，按child的index放
+     * 画的时候只要child的位置没变，就直接用，不会再new任何东西
+     */
+    private class ChildShadow {
+        //算阴影的时候是哪个child，child增删之后index会对不上
+        var owner: View? = null
+        //算阴影的时候child的位置
+        val frame = Rect()
+        //null表示用九宫格画
+        var bitmap: Bitmap? = null
+        //bitmap已经平移好的左上角
+        var bitmapLeft = 0f
+        var bitmapTop = 0f
+        //上一次layout之后阴影的范围，用来算要重画的区域。GONE的时候是空的
+        val laidOutBounds = Rect()
+
+        //还在后台模糊的请求。不是null的时候先画placeholder
+        var pending: ShadowRasterizer.Request? = null
+        //上一张阴影，拉伸到现在的大小先顶着。没有的话画一个半透明的方框
+        var placeholder: Bitmap? = null
+        val placeholderBounds = Rect()
+
+        fun cancelPending() {
+            pending?.cancel()
+            pending = null
+            placeholder = null
+        }
+    }
+
+    private val childShadows = ArrayList<ChildShadow>()
+
+    //这次画的时候要画的阴影的范围，在外面的阴影不画
+    private val cullBounds = Rect()
+    //在屏幕上看得见的范围
+    private val visibleBounds = Rect()
+    //上一次硬件加速画的时候，有没有因为看不见跳过阴影
+    private var shadowsCulled = false
+    //layout之后要重画的区域
+    private val dirtyBounds = Rect()
+    //阴影还没模糊好的时候画的半透明方框
+    private val placeholderPaint = Paint()
+
+    //后台模糊好了，放进缓存，只重画这个child的阴影
+    private val rasterizerCallback = object : ShadowRasterizer.Callback {
+        override fun onShadowReady(request: ShadowRasterizer.Request, bitmap: Bitmap) {
+            shadowCache.put(request.outline, request.width, request.height, request.radius, bitmap)
+            val shadow = request.tag as ChildShadow
+            if (shadow.pending !== request) {
+                return
+            }
+            shadow.pending = null
+            shadow.placeholder = null
+            shadow.bitmap = bitmap
+            val frame = shadow.frame
+            invalidate(frame.left - SHADOW_OUTSET, frame.top - SHADOW_OUTSET,
+                    frame.right + SHADOW_OUTSET, frame.bottom + SHADOW_OUTSET)
+        }
+    }
+
+    private fun ensureChildShadows(childCount: Int) {
+        while (childShadows.size < childCount) {
+            childShadows.add(ChildShadow())
+        }
+        //移除掉的child不要再引用着
+        while (childShadows.size > childCount) {
+            childShadows.removeAt(childShadows.size - 1).cancelPending()
+        }
+    }
+
+    /*
+    硬件加速的时候display list不会因为自己被挪到屏幕里面就重新录，移到上次没画阴影的地方要自己重画
+    不只是滚动：自己或者parent的translation、offsetTopAndBottom（CoordinatorLayout的behavior、动画）都不会有scroll事件
+    所以每一帧画之前都看一下，看得见的范围出了上次画的范围才invalidate
+     */
+    private val preDrawListener = ViewTreeObserver.OnPreDrawListener {
+        if (shadowsCulled && getLocalVisibleRect(visibleBounds) && !cullBounds.contains(visibleBounds)) {
+            invalidate()
+        }
+        true
+    }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        viewTreeObserver.addOnPreDrawListener(preDrawListener)
+    }
+
+    override fun onDetachedFromWindow() {
+        super.onDetachedFromWindow()
+        viewTreeObserver.removeOnPreDrawListener(preDrawListener)
+        //不在屏幕上了，还没模糊完的就不要了。下次画的时候重新来
+        for (shadow in childShadows) {
+            if (shadow.pending != null) {
+                shadow.cancelPending()
+                shadow.owner = null
+            }
+        }
+    }
+
+    /**
+     * layout之后，位置变了的child，只重画它原来和现在的阴影合起来的那一块
+     * child自己layout的时候只会重画child的范围，阴影是画在外面的，所以要我们自己来
+     * 注意：5.0以后硬件加速的时候invalidate(Rect)的范围会被忽略，整个view都会重画，只有软件绘制才省
+     */
+    private fun invalidateMovedShadows() {
+        val childCount = childCount
+        ensureChildShadows(childCount)
         for (childIndex in 0 until childCount) {
             val childView = getChildAt(childIndex)
+            val bounds = childShadows[childIndex].laidOutBounds
+            val left: Int
+            val top: Int
+            val right: Int
+            val bottom: Int
+            if (childView.visibility == View.GONE || childView.width <= 0 || childView.height <= 0) {
+                left = 0
+                top = 0
+                right = 0
+                bottom = 0
+            } else {
+                left = childView.left - SHADOW_OUTSET
+                top = childView.top - SHADOW_OUTSET
+                right = childView.right + SHADOW_OUTSET
+                bottom = childView.bottom + SHADOW_OUTSET
+            }
+            if (bounds.left == left && bounds.top == top && bounds.right == right && bounds.bottom == bottom) {
+                continue
+            }
 
-            if (childView is ShapeOfView) {
-                val shapeOfView = childView as ShapeOfView
-                val outLinePath = shapeOfView.outLinePath
-                canvas.save()
-                canvas.translate(shapeOfView.left.toFloat(),shapeOfView.top.toFloat())
-                canvas.drawPath(outLinePath, paint)
+            dirtyBounds.set(bounds)
+            dirtyBounds.union(left, top, right, bottom)
+            if (!dirtyBounds.isEmpty) {
+                invalidate(dirtyBounds)
+            }
+            bounds.set(left, top, right, bottom)
+        }
+    }
 
-                canvas.restore()
+    //在每个child的四周画阴影
+    internal fun drawShadows(canvas: Canvas) {
+        //方框的阴影都用同一张九宫格拉伸
+        val rectShadow = NinePatchShadow.get(SHADOW_RADIUS, 0f)
+        val childCount = childCount
+        ensureChildShadows(childCount)
+        //什么都看不到
+        if (!computeCullBounds(canvas)) {
+            return
+        }
+        for (childIndex in 0 until childCount) {
+            val childView = getChildAt(childIndex)
+            //和invalidateMovedShadows一样：GONE的child还留着上一次的位置，但是没有阴影
+            if (childView.visibility == View.GONE || childView.width <= 0 || childView.height <= 0) {
+                continue
+            }
+            //阴影整个在范围外面的不画
+            if (!cullBounds.intersects(childView.left - SHADOW_OUTSET, childView.top - SHADOW_OUTSET,
+                            childView.right + SHADOW_OUTSET, childView.bottom + SHADOW_OUTSET)) {
+                shadowsCulled = canvas.isHardwareAccelerated
+                continue
+            }
+
+            val shadow = childShadows[childIndex]
+            val frame = shadow.frame
+            if (shadow.owner !== childView || frame.left != childView.left || frame.top != childView.top
+                    || frame.right != childView.right || frame.bottom != childView.bottom) {
+                updateShadow(shadow, childView, rectShadow)
+            }
+
+            val bitmap = shadow.bitmap
+            if (shadow.pending != null) {
+                drawPlaceholder(canvas, shadow)
+            } else if (bitmap == null) {
+                rectShadow.draw(canvas, frame.left, frame.top, frame.right, frame.bottom, paint)
             } else {
-                val outRect = Rect()
-//            outRect.left = childView.left- PADDING_INT
-//            outRect.top = childView.top- PADDING_INT
-//            outRect.right = childView.right+ PADDING_INT
-//            outRect.bottom = childView.bottom+ PADDING_INT
-
-                outRect.left = childView.left
-                outRect.top = childView.top
-                outRect.right = childView.right
-                outRect.bottom = childView.bottom
-
-//            childView.getDrawingRect(outRect)
-                canvas.drawRect(outRect, paint)
+                canvas.drawBitmap(bitmap, shadow.bitmapLeft, shadow.bitmapTop, paint)
             }
+        }
+    }
 
+    /**
+     * 算出这次要画哪个范围里面的阴影，放在cullBounds里。返回false就是什么都看不到
+     * 软件绘制的时候，canvas的clip就是要重画的那一块
+     * 硬件加速的时候录的是整个view的display list，clip一直是整个view，拿来裁没有用
+     * 所以用屏幕上看得见的范围，上下左右再各多留半个，移出这个范围的时候 [preDrawListener] 再重画
+     */
+    private fun computeCullBounds(canvas: Canvas): Boolean {
+        shadowsCulled = false
+        if (!canvas.getClipBounds(cullBounds)) {
+            return false
+        }
+        if (!canvas.isHardwareAccelerated) {
+            return true
+        }
+        if (!getLocalVisibleRect(visibleBounds)) {
+            //现在看不到，等滚进来再画
+            cullBounds.setEmpty()
+            shadowsCulled = true
+            return false
+        }
+        visibleBounds.inset(-visibleBounds.width() / 2, -visibleBounds.height() / 2)
+        if (!cullBounds.intersect(visibleBounds)) {
+            cullBounds.setEmpty()
+            shadowsCulled = true
+            return false
+        }
+        return true
+    }
+
+    private fun drawPlaceholder(canvas: Canvas, shadow: ChildShadow) {
+        val placeholder = shadow.placeholder
+        if (placeholder != null) {
+            canvas.drawBitmap(placeholder, null, shadow.placeholderBounds, paint)
+        } else {
+            placeholderPaint.color = paint.color
+            placeholderPaint.alpha = paint.alpha / 4
+            canvas.drawRect(shadow.frame, placeholderPaint)
+        }
+    }
+
+    /**
+     * child的位置变了才会走到这里
+     * ShapeOfView也是只在自己的位置变了的时候才重新算outline，所以这里不会漏掉
+     */
+    private fun updateShadow(shadow: ChildShadow, childView: View, rectShadow: NinePatchShadow) {
+        val width = childView.width
+        val height = childView.height
+        //上一张阴影，同一个child的话可以拿来当placeholder
+        val previous = if (shadow.owner === childView) shadow.bitmap ?: shadow.placeholder else null
+        //大小又变了，之前的请求没用了
+        shadow.cancelPending()
+        shadow.owner = childView
+        shadow.frame.set(childView.left, childView.top, childView.right, childView.bottom)
+        val shadowPadding = shadowCache.padding(SHADOW_RADIUS)
+        shadow.bitmapLeft = (childView.left - shadowPadding).toFloat()
+        shadow.bitmapTop = (childView.top - shadowPadding).toFloat()
+
+        //ShapeOfView 画自己的outline，其他的画方框
+        val outLinePath = (childView as? ShapeOfView)?.outLinePath
+        if (outLinePath == null) {
+            shadow.bitmap = if (rectShadow.canDraw(width, height)) {
+                null
+            } else {
+                //九宫格放不下的小方框，还是整个模糊。很小，直接在这里模糊
+                shadowCache.getRect(width, height, SHADOW_RADIUS)
+            }
+            return
+        }
+
+        val outline = shadowCache.outline(outLinePath)
+        val cached = shadowCache.peek(outline, width, height, SHADOW_RADIUS)
+        if (cached != null) {
+            shadow.bitmap = cached
+            return
         }
+        //形状的阴影放到后台去模糊，path复制一份，后面ShapeOfView再改也没关系
+        shadow.bitmap = null
+        shadow.placeholder = previous
+        shadow.placeholderBounds.set(childView.left - shadowPadding, childView.top - shadowPadding,
+                childView.right + shadowPadding, childView.bottom + shadowPadding)
+        val request = ShadowRasterizer.Request(outline.copy(), Path(outLinePath), width, height,
+                SHADOW_RADIUS, shadow, rasterizerCallback)
+        shadow.pending = request
+        ShadowRasterizer.submit(request)
     }
 
     override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        LayoutTracer.begin(TRACE_MEASURE)
         measureVertical(widthMeasureSpec, heightMeasureSpec)
+        LayoutTracer.end(TRACE_MEASURE)
     }
 
 
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
+        LayoutTracer.begin(TRACE_LAYOUT)
         layoutVertical(left, top, right, bottom)
+        invalidateMovedShadows()
+        LayoutTracer.end(TRACE_LAYOUT)
     }
 
     private fun measureVertical(widthMeasureSpec: Int, heightMeasureSpec: Int) {
@@ -205,6 +466,7 @@ class SimpleLinearLayout : ViewGroup {
         var remainingExcess = (heightSize - totalHeight + consumedExcessSpace) * 1f
 
         if (remainingExcess > 0 && weightSum > 0.0f) {  //这个时候，需要重新去布局我们需要的高度
+            LayoutTracer.begin(TRACE_WEIGHT_PASS)
             //todo 除了布局中计算的child中的weight sum，还可以设置总的weight.所以我们需要考虑
             var remainingWeightSum = weightSum
             totalHeight = 0
@@ -263,6 +525,7 @@ class SimpleLinearLayout : ViewGroup {
                             lp.topMargin + lp.bottomMargin)
                 }
             }
+            LayoutTracer.end(TRACE_WEIGHT_PASS)
 
         }
 
@@ -280,16 +543,18 @@ class SimpleLinearLayout : ViewGroup {
 
         //不要忘记一点。因为是vertical所以所有的child的最大宽度应该是一直的
         if (matchWidth) {
-            forceUniformWidth(childCount, heightMeasureSpec)
+            forceUniformWidth(childCount)
         }
 
     }
 
-    //因为需要重写去measureChild，所以计算完之后的高度要传入。
-    private fun forceUniformWidth(childCount: Int, heightMeasureSpec: Int) {
+    //child原来测量出来的高度，直接用spec传进去，不去临时修改layoutParams
+    private fun forceUniformWidth(childCount: Int) {
+        LayoutTracer.begin(TRACE_FORCE_UNIFORM_WIDTH)
         //因为是去同意，所以强行将其设置成exactly
         val uniformMeasureSpec = View.MeasureSpec.makeMeasureSpec(measuredWidth,
                 View.MeasureSpec.EXACTLY)
+        val horizontalPadding = paddingLeft + paddingRight
         for (i in 0 until childCount) {
             val child = getChildAt(i)
             child?.apply {
@@ -297,18 +562,22 @@ class SimpleLinearLayout : ViewGroup {
                     val lp = this.layoutParams as android.widget.LinearLayout.LayoutParams
                     //如果宽度是match的话，就使用当前的width
                     if (lp.width == LayoutParams.MATCH_PARENT) {
-                        // Temporarily force children to reuse their old measured height
-                        // FIXME: this may not be right for something like wrapping text?
-                        val oldHeight = lp.height
-                        lp.height = this.measuredHeight
-                        // Remeasue with new dimensions
-                        measureChildWithMargins(child, uniformMeasureSpec, 0, heightMeasureSpec, 0)
-                        lp.height = oldHeight
+                        val childWidthMeasureSpec = getChildMeasureSpec(uniformMeasureSpec,
+                                horizontalPadding + lp.leftMargin + lp.rightMargin, lp.width)
+                        //宽度已经一样了，就不需要再测一次了
+                        if (measuredWidth != View.MeasureSpec.getSize(childWidthMeasureSpec)) {
+                            // FIXME: this may not be right for something like wrapping text?
+                            val childHeightMeasureSpec = View.MeasureSpec.makeMeasureSpec(
+                                    measuredHeight, View.MeasureSpec.EXACTLY)
+                            // Remeasue with new dimensions
+                            measure(childWidthMeasureSpec, childHeightMeasureSpec)
+                        }
                     }
                 }
             }
 
         }
+        LayoutTracer.end(TRACE_FORCE_UNIFORM_WIDTH)
     }
 
     /*
@@ -2,14 +2,13 @@ package com.cry.copylinearlayout.relative
 
 import android.annotation.SuppressLint
 import android.content.Context
-import android.support.v4.util.ArrayMap
-import android.support.v4.util.Pools
 import android.util.AttributeSet
-import android.util.SparseArray
 import android.view.View
 import android.view.ViewDebug
 import android.view.ViewGroup
 import com.cry.copylinearlayout.R
+import com.cry.layoutengine.DependencySorter
+import com.cry.layoutengine.LayoutTracer
 import java.util.*
 
 /**
@@ -131,6 +130,11 @@ class SimpleDoubleRelativeLayout : ViewGroup {
         private val RULES_HORIZONTAL = intArrayOf(LEFT_OF, RIGHT_OF, ALIGN_LEFT, ALIGN_RIGHT, START_OF, END_OF, ALIGN_START, ALIGN_END)
 
         private val VALUE_NOT_SET = Integer.MIN_VALUE
+
+        //LayoutTracer里面记录的span
+        private val TRACE_MEASURE = LayoutTracer.register("SimpleDoubleRelativeLayout.onMeasure")
+        private val TRACE_LAYOUT = LayoutTracer.register("SimpleDoubleRelativeLayout.onLayout")
+        private val TRACE_SORT_CHILDREN = LayoutTracer.register("SimpleDoubleRelativeLayout.sortChildren")
     }
 
 
@@ -139,16 +143,145 @@ class SimpleDoubleRelativeLayout : ViewGroup {
     private var mSortedHorizontalChildren: Array<View?>? = null
     private val mGraph = DependencyGraph()
 
-    //在requestLayout这里标记成需要重新布局
-    override fun requestLayout() {
-        super.requestLayout()
-        mDirtyHierarchy = true
+    /*
+    上一次排序的时候，每个index上的child、它的id、LayoutParams和rule的值
+    只要这些都没变，依赖关系就还是一样的，不用重新排序
+    rule存的是值，不是mRules数组本身：直接写mRules[...]的话，数组还是同一个，只有比值才知道改过
+     */
+    private var mSortedSourceChildren: Array<View?>? = null
+    private var mSortedSourceParams: Array<ViewGroup.LayoutParams?>? = null
+    private var mSortedSourceIds: IntArray? = null
+    //每个child占VERB_COUNT个，不是我们的LayoutParams的话都是0
+    private var mSortedSourceRules: IntArray? = null
+
+    //重新排序了几次
+    var sortCount = 0L
+        private set
+    //依赖关系没变，跳过排序几次
+    var sortSkippedCount = 0L
+        private set
+
+    //onMeasure里面真的调用了几次child.measure
+    var childMeasureCount = 0L
+        private set
+    //纵向测量的时候，spec和横向测量时一样，跳过了几次child.measure
+    var childMeasureSkippedCount = 0L
+        private set
+    //只测量了requestLayout的child和依赖它的child的次数
+    var incrementalMeasureCount = 0L
+        private set
+    //onLayout里调用child.layout的次数
+    var childLayoutCount = 0L
+        private set
+    //位置没变、这次没有measure、也没有requestLayout，没有调用child.layout的次数
+    var childLayoutSkippedCount = 0L
+        private set
+
+    //上一次onMeasure的spec，变了的话所有child都要重新来
+    private var mLastWidthMeasureSpec = -1
+    private var mLastHeightMeasureSpec = -1
+
+    /*
+    增量measure：只有child自己requestLayout了（isLayoutRequested），
+    只有它和直接、间接依赖它的child的位置会变，别的child的mLeft/mTop/mRight/mBottom都不用动
+    返回false表示不是child引起的（比如自己的padding变了），要全部重新来
+     */
+    private fun markDirtyChildren(): Boolean {
+        var dirtyCount = 0
+        for (index in 0 until childCount) {
+            val child = getChildAt(index)
+            val layoutParams = child.layoutParams
+            if (layoutParams is LayoutParams) {
+                layoutParams.mDirty = child.isLayoutRequested
+                if (layoutParams.mDirty) {
+                    dirtyCount++
+                }
+            }
+        }
+        if (dirtyCount == 0) {
+            return false
+        }
+
+        //一个方向上位置变了，重新测量之后另一个方向的大小也可能变，所以两个方向来回传，直到没有新的
+        var changed: Boolean
+        do {
+            changed = markDependents(mSortedHorizontalChildren!!, LEFT_OF)
+            changed = markDependents(mSortedVerticalChildren!!, ABOVE) || changed
+        } while (changed)
+        return true
+    }
+
+    //按排好的顺序走一遍，锚点一定在前面，所以一遍就能传到底
+    private fun markDependents(sorted: Array<View?>, relation: Int): Boolean {
+        var changed = false
+        for (view in sorted) {
+            val layoutParams = view?.layoutParams as? LayoutParams ?: continue
+            if (!layoutParams.mDirty && isAnchorDirty(layoutParams.mRules, relation)) {
+                layoutParams.mDirty = true
+                changed = true
+            }
+        }
+        return changed
+    }
+
+    //锚点要重新测，或者锚点是GONE的时候链上后面的锚点要重新测，自己的位置就可能变
+    private fun isAnchorDirty(rules: IntArray, relation: Int): Boolean {
+        var id = rules[relation]
+        while (id != 0) {
+            val anchor = mGraph.getNode(id)?.view ?: return false
+            val layoutParams = anchor.layoutParams as? LayoutParams ?: return false
+            if (layoutParams.mDirty) {
+                return true
+            }
+            if (anchor.visibility != View.GONE) {
+                return false
+            }
+            id = layoutParams.mRules[relation]
+        }
+        return false
+    }
+
+    /*
+    以前在requestLayout里面就标记成要重新排序，child的内容变了也会整个重新排序
+    现在只有结构变了才排序：child增删，id变了，LayoutParams换了，或者rule的值和排序时不一样
+     */
+    private fun isHierarchyChanged(): Boolean {
+        if (mDirtyHierarchy) {
+            return true
+        }
+        val children = mSortedSourceChildren ?: return true
+        val params = mSortedSourceParams!!
+        val ids = mSortedSourceIds!!
+        val rules = mSortedSourceRules!!
+        val childCount = childCount
+        if (children.size != childCount) {
+            return true
+        }
+        for (index in 0 until childCount) {
+            val child = getChildAt(index)
+            val layoutParams = child.layoutParams
+            if (children[index] !== child || ids[index] != child.id || params[index] !== layoutParams) {
+                return true
+            }
+            if (layoutParams is LayoutParams) {
+                val childRules = layoutParams.mRules
+                val offset = index * VERB_COUNT
+                for (verb in 0 until VERB_COUNT) {
+                    if (rules[offset + verb] != childRules[verb]) {
+                        return true
+                    }
+                }
+            }
+        }
+        return false
     }
 
     /**
      * 从两个维度来梳理相互之间的依赖关系。vertical和horizontal
      */
     private fun sortChildren() {
+        LayoutTracer.begin(TRACE_SORT_CHILDREN)
+        sortCount++
         //得到childCount
         var childCount = childCount
         //将两个维度的数组进行重置
@@ -160,27 +293,68 @@ class SimpleDoubleRelativeLayout : ViewGroup {
             mSortedHorizontalChildren = arrayOfNulls(childCount)
         }
 
+        if (mSortedSourceChildren == null || mSortedSourceChildren!!.size != childCount) {
+            mSortedSourceChildren = arrayOfNulls(childCount)
+            mSortedSourceParams = arrayOfNulls(childCount)
+            mSortedSourceIds = IntArray(childCount)
+            mSortedSourceRules = IntArray(childCount * VERB_COUNT)
+        }
+        //记下这次排序用的是什么，下次用来判断要不要重新排序
+        for (childIndex in 0 until childCount) {
+            val child = getChildAt(childIndex)
+            val layoutParams = child.layoutParams
+            mSortedSourceChildren!![childIndex] = child
+            mSortedSourceParams!![childIndex] = layoutParams
+            mSortedSourceIds!![childIndex] = child.id
+            if (layoutParams is LayoutParams) {
+                System.arraycopy(layoutParams.mRules, 0, mSortedSourceRules!!, childIndex * VERB_COUNT, VERB_COUNT)
+            } else {
+                Arrays.fill(mSortedSourceRules!!, childIndex * VERB_COUNT, (childIndex + 1) * VERB_COUNT, 0)
+            }
+        }
+
         //所有的这些依赖，都放到 DependencyGraph这个类中
         val graph = mGraph
         graph.clear()
+        graph.ensureCapacity(childCount)
 
         //先将所有的节点添加到依赖图中
         for (childIndex in 0 until childCount) {
             graph.add(getChildAt(childIndex))
         }
+        graph.prepare()
 
         //再来筛选相互关系
         graph.getSortedViews(mSortedVerticalChildren!!, RULES_VERTICAL)
         graph.getSortedViews(mSortedHorizontalChildren!!, RULES_HORIZONTAL)
+        LayoutTracer.end(TRACE_SORT_CHILDREN)
     }
 
     private var mBaselineView: View? = null
 
     override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
-        if (mDirtyHierarchy) {
+        LayoutTracer.begin(TRACE_MEASURE)
+        val hierarchyChanged = isHierarchyChanged()
+        if (hierarchyChanged) {
             mDirtyHierarchy = false
             //梳理相互的依赖关系
             sortChildren()
+        } else {
+            sortSkippedCount++
+        }
+
+        //结构和自己的spec都没变的话，只测requestLayout的child和依赖它的
+        val incremental = !hierarchyChanged
+                && widthMeasureSpec == mLastWidthMeasureSpec
+                && heightMeasureSpec == mLastHeightMeasureSpec
+                && markDirtyChildren()
+        mLastWidthMeasureSpec = widthMeasureSpec
+        mLastHeightMeasureSpec = heightMeasureSpec
+        if (incremental) {
+            incrementalMeasureCount++
+        }
+        for (index in 0 until childCount) {
+            (getChildAt(index).layoutParams as? LayoutParams)?.mMeasuredThisPass = false
         }
 
         //开始真正的操作
@@ -244,7 +418,7 @@ class SimpleDoubleRelativeLayout : ViewGroup {
             it?.apply {
                 if (visibility != View.GONE) {
                     val layoutParams = layoutParams
-                    if (layoutParams is LayoutParams) {
+                    if (layoutParams is LayoutParams && (!incremental || layoutParams.mDirty)) {
                         val rules = layoutParams.mRules
                         //将横向的属性应用到child上
                         applyHorizontalSizeRules(layoutParams, myWidth, rules)
@@ -267,7 +441,7 @@ class SimpleDoubleRelativeLayout : ViewGroup {
             it?.apply {
                 if (visibility != View.GONE) {
                     val layoutParams = layoutParams
-                    if (layoutParams is LayoutParams) {
+                    if (layoutParams is LayoutParams && (!incremental || layoutParams.mDirty)) {
                         val rules = layoutParams.mRules
                         //将横向的属性应用到child上
                         applyVerticalSizeRules(layoutParams, myWidth, rules)
@@ -471,6 +645,7 @@ class SimpleDoubleRelativeLayout : ViewGroup {
 
         //这个方法记得调用!!
         setMeasuredDimension(width, height)
+        LayoutTracer.end(TRACE_MEASURE)
     }
 
 
@@ -553,7 +728,11 @@ class SimpleDoubleRelativeLayout : ViewGroup {
         params.mRight = left + childWidth
     }
 
-    //这里势必会导致，什么依赖都没有的View会计算两次？，是需要计算两次的，从两个维度上
+    /*
+    这里势必会导致，什么依赖都没有的View会计算两次？，是需要计算两次的，从两个维度上
+    但是纵向没有锚点的话，纵向测量时高度的spec只和自己有关，这里就能算出来
+    直接用这个spec来测，纵向的时候spec一样，就不用再测第二次了
+     */
     private fun measureChildHorizontal(child: View, params: LayoutParams, myWidth: Int, myHeight: Int) {
         params.apply {
             val childMeasureSpec = getChildMeasureSpec(
@@ -562,7 +741,14 @@ class SimpleDoubleRelativeLayout : ViewGroup {
                     leftMargin, rightMargin,
                     0, 0, myWidth)
             val childHeightMeasureSpec: Int
-            if (myHeight < 0) {
+            if (getRelatedView(mRules, ABOVE) == null) {
+                //和measureChild里面纵向的算法一样，这时候mTop和mBottom都还没有值
+                childHeightMeasureSpec = getChildMeasureSpec(
+                        VALUE_NOT_SET, VALUE_NOT_SET,
+                        height,
+                        topMargin, bottomMargin,
+                        0, 0, myHeight)
+            } else if (myHeight < 0) {
                 if (params.height >= 0) {
                     childHeightMeasureSpec = View.MeasureSpec.makeMeasureSpec(
                             params.height, View.MeasureSpec.EXACTLY)
@@ -582,8 +768,12 @@ class SimpleDoubleRelativeLayout : ViewGroup {
                 childHeightMeasureSpec = View.MeasureSpec.makeMeasureSpec(maxHeight, heightMode)
             }
 
-            //最后交给他计算就可以了
+            //最后交给他计算就可以了。记下spec，纵向的时候用来对比
+            onChildMeasure(childMeasureSpec, childHeightMeasureSpec)
             child.measure(childMeasureSpec, childHeightMeasureSpec)
+            childMeasureCount++
+            mHorizontalWidthSpec = childMeasureSpec
+            mHorizontalHeightSpec = childHeightMeasureSpec
         }
 
 
@@ -604,8 +794,22 @@ class SimpleDoubleRelativeLayout : ViewGroup {
                     0, 0,
                     myHeight)
 
+            /*
+            横向的时候已经用一样的高度测过了，宽度也已经是这么宽了，再测一次结果也一样
+            宽度的spec一般不一样：横向定好了mLeft和mRight，这里就变成了EXACTLY，但大小就是横向测出来的宽度
+             */
+            if (childHeightMeasureSpec == mHorizontalHeightSpec
+                    && (childWidthMeasureSpec == mHorizontalWidthSpec
+                    || (View.MeasureSpec.getMode(childWidthMeasureSpec) == View.MeasureSpec.EXACTLY
+                    && View.MeasureSpec.getSize(childWidthMeasureSpec) == child.measuredWidth))) {
+                childMeasureSkippedCount++
+                return
+            }
+
             //最后交给他计算就可以了
+            onChildMeasure(childWidthMeasureSpec, childHeightMeasureSpec)
             child.measure(childWidthMeasureSpec, childHeightMeasureSpec)
+            childMeasureCount++
         }
 
 
@@ -754,24 +958,16 @@ class SimpleDoubleRelativeLayout : ViewGroup {
 
         if (id != 0) {
             //然后去依赖图中，取得相应的node
-            val node = mGraph.mKeyNodes[id]
-
-            node?.also {
-                var v = it.view
-                v?.apply {
-                    //找到链上第一个可见的View返回
-                    while (visibility == View.GONE) {
-                        val layoutParams = layoutParams
-                        if (layoutParams is LayoutParams) {
-                            val innerRules = layoutParams.mRules
-                            //如果为null，说明找不到下一个了，就直接返回了
-                            val innerNode = mGraph.mKeyNodes[innerRules[relation]] ?: return null
-                            v = innerNode.view
-                        }
-                    }
-                }
-                return v
+            var v = mGraph.getNode(id)?.view ?: return null
+
+            //找到链上第一个可见的View返回
+            while (v.visibility == View.GONE) {
+                val layoutParams = v.layoutParams as? LayoutParams ?: return null
+                val innerRules = layoutParams.mRules
+                //如果为null，说明找不到下一个了，就直接返回了
+                v = mGraph.getNode(innerRules[relation])?.view ?: return null
             }
+            return v
         }
 
         return null
@@ -779,22 +975,34 @@ class SimpleDoubleRelativeLayout : ViewGroup {
 
 
     override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
-        if (changed) {
-            var count = childCount
-            for (index in 0 until count) {
-                val child = getChildAt(index)
-                if (child.visibility != View.GONE) {
-                    val layoutParams = child.layoutParams
-                    if (layoutParams is SimpleDoubleRelativeLayout.LayoutParams) {
-                        val childLeft = layoutParams.mLeft
-                        val childRight = layoutParams.mRight
-                        val childTop = layoutParams.mTop
-                        val childBottom = layoutParams.mBottom
+        LayoutTracer.begin(TRACE_LAYOUT)
+        //不能只看changed，自己的大小没变，child的位置也可能变了
+        //和child现在真的位置比（child可能被别人挪过、换过parent），不是和自己记下来的比
+        //位置一样的时候，这次measure过或者自己requestLayout了，还是要layout，它的onLayout要跑
+        for (index in 0 until childCount) {
+            val child = getChildAt(index)
+            if (child.visibility != View.GONE) {
+                val layoutParams = child.layoutParams
+                if (layoutParams is SimpleDoubleRelativeLayout.LayoutParams) {
+                    val childLeft = layoutParams.mLeft
+                    val childRight = layoutParams.mRight
+                    val childTop = layoutParams.mTop
+                    val childBottom = layoutParams.mBottom
+                    if (layoutParams.mMeasuredThisPass
+                            || child.isLayoutRequested
+                            || childLeft != child.left
+                            || childTop != child.top
+                            || childRight != child.right
+                            || childBottom != child.bottom) {
                         child.layout(childLeft, childTop, childRight, childBottom)
+                        childLayoutCount++
+                    } else {
+                        childLayoutSkippedCount++
                     }
                 }
             }
         }
+        LayoutTracer.end(TRACE_LAYOUT)
     }
 
     constructor(context: Context) : super(context) {}
@@ -839,10 +1047,22 @@ class SimpleDoubleRelativeLayout : ViewGroup {
                         ViewDebug.IntToString(from = START_OF, to = "startOf"),
                         ViewDebug.IntToString(from = END_OF, to = "endOf")), mapping = arrayOf(ViewDebug.IntToString(from = TRUE, to = "true"),
                 ViewDebug.IntToString(from = 0, to = "false/NO_ID")))
+        //改了之后requestLayout，下一次measure的时候和排序时记下的值比，不一样就重新排序
         val mRules = IntArray(VERB_COUNT)
         val mInitialRules = IntArray(VERB_COUNT)
 
-        private var mRulesChanged = false
+        //增量measure的时候，这个child要重新测量和摆放
+        internal var mDirty = false
+
+        //这一次onMeasure里child真的重新测量了，layout的时候不能跳过，它的onLayout要跑
+        internal var mMeasuredThisPass = false
+        //上一次给child.measure的spec
+        private var mMeasuredWidthSpec = -1
+        private var mMeasuredHeightSpec = -1
+
+        //这一次横向测量时给child的spec
+        internal var mHorizontalWidthSpec = 0
+        internal var mHorizontalHeightSpec = 0
 
         //layout的时候，会根据他进行摆放。所以在进行操作
         var mLeft = 0
@@ -856,7 +1076,6 @@ class SimpleDoubleRelativeLayout : ViewGroup {
         constructor(source: ViewGroup.MarginLayoutParams) : super(source)
         constructor(source: LayoutParams) : super(source) {
 //            this.mIsRtlCompatibilityMode = source.mIsRtlCompatibilityMode
-//            this.mRulesChanged = source.mRulesChanged
 //            this.alignWithParent = source.alignWithParent
 
             System.arraycopy(source.mRules, LEFT_OF, this.mRules, LEFT_OF, VERB_COUNT)
@@ -882,189 +1101,126 @@ class SimpleDoubleRelativeLayout : ViewGroup {
             }
 
             System.arraycopy(rules, LEFT_OF, initialRules, LEFT_OF, VERB_COUNT)
-            mRulesChanged = true
             typedArray.recycle()
         }
+
+        /**
+         * 添加一条rule，subject是锚点的id。ALIGN_PARENT_*之类的不需要锚点的用TRUE
+         */
+        fun addRule(verb: Int, subject: Int = TRUE) {
+            mRules[verb] = subject
+            mInitialRules[verb] = subject
+        }
+
+        fun removeRule(verb: Int) {
+            addRule(verb, 0)
+        }
+
+        /**
+         * 在child.measure之前调用。和View.measure的判断一样：spec变了onMeasure才会跑
+         * spec没变的话child.measure直接用上一次的结果，layout的时候可以跳过
+         * child自己requestLayout的情况在onLayout里看isLayoutRequested
+         */
+        internal fun onChildMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+            if (widthMeasureSpec != mMeasuredWidthSpec || heightMeasureSpec != mMeasuredHeightSpec) {
+                mMeasuredWidthSpec = widthMeasureSpec
+                mMeasuredHeightSpec = heightMeasureSpec
+                mMeasuredThisPass = true
+            }
+        }
     }
 
     private open class DependencyGraph {
-        //所有的在视图中的View
-        var mNodes = ArrayList<Node>()
-
         /*
-        这里得keyNodes 的key 是 id value是Node.
-        存放的是所有有id的node.也是只有有id的View才能进行布局
+        node的arena，每个layout自己一份，大小跟着childCount长，每次排序都复用
+        measure只在主线程，不需要同步；也不会有静态的池子一直引用着View
+        前mNodeCount个是现在在用的
          */
-        var mKeyNodes = SparseArray<Node>()
+        private val mNodes = ArrayList<Node>()
+        private var mNodeCount = 0
 
         /*
-        这里是根节点。临时的缓存
-        由于官方更推荐使用AarryDeque用作栈和队列 循环数组
+        依赖关系用CSR的int数组来存，按child的index来排序，不再给每个node建map
+        数组都是复用的，排序的时候不会new东西
          */
-        var mRoots = ArrayDeque<Node>()
+        private val mSorter = DependencySorter()
+        private var mIds = IntArray(0)
+        private var mRules = arrayOfNulls<IntArray>(0)
+        private var mOrder = IntArray(0)
 
         fun clear(): Unit {
             val nodes = mNodes
-            val count = nodes.size
-            for (index in 0 until count) {
-                nodes[index].release()
+            for (index in 0 until mNodeCount) {
+                //node留着下次用，View不要再引用着
+                nodes[index].view = null
             }
-            nodes.clear()
-            mKeyNodes.clear()
-            mRoots.clear()
+            mNodeCount = 0
+            mSorter.setNodes(0, mIds)
         }
 
-        /*
-        添加个View,就是去获取节点。添加节点
-         */
-        fun add(view: View) {
-            val id = view.id
-            val node = Node.acquire(view)
-            if (id != View.NO_ID) {
-                mKeyNodes.put(id, node)
+        //一次把arena扩到count个node
+        fun ensureCapacity(count: Int) {
+            val nodes = mNodes
+            nodes.ensureCapacity(count)
+            while (nodes.size < count) {
+                nodes.add(Node())
             }
-            mNodes.add(node)
         }
 
         /*
-        对传入的数组进行过滤。计算成view组成的节点之间的依赖关系
+        添加个View,就是从arena里面取下一个node
          */
-        fun getSortedViews(sorted: Array<View?>, rules: IntArray): Unit {
-            val roots = findRoots(rules)
-            var index = 0
-
-            var node: Node?
-            node = roots.pollLast()
-            do {
-                node?.also {
-                    val view = it.view
-                    val key = view!!.id
-
-                    sorted[index++] = view
-
-                    val dependents = it.dependents
-                    val count = dependents.size
-                    for (i in 0 until count) {
-                        //将依赖的点的依赖移除掉
-                        val dependent = dependents.keyAt(i)
-                        val dependencies = dependent.dependencies
-                        dependencies.remove(key)
-                        if (dependencies.size() == 0) { //只要发生这种情况，下面就会报异常。因为当前因为是循环依赖的情况
-                            roots.add(dependent)
-                        }
-                    }
-                }
-                node = roots.pollLast()
-            } while (node != null)
-
-            if (index < sorted.size) {
-                throw IllegalStateException("Circular dependencies cannot exist in RelativeLayout")
+        fun add(view: View) {
+            if (mNodeCount == mNodes.size) {
+                mNodes.add(Node())
             }
-
+            mNodes[mNodeCount++].view = view
         }
 
         /*
-        根据filter内的规则，找到所有的根节点。根节点是 dependencies为空的节点
+        所有的View都添加完之后调用，把id和rule取出来交给mSorter。两个方向共用
          */
-        private fun findRoots(rulesFilter: IntArray): ArrayDeque<Node> {
-            //得到所有可能可以进行布局的node
-            val keyNodes = mKeyNodes
-            //所有的node
+        fun prepare() {
             val nodes = mNodes
-
-            val count = nodes.size
-
-            //开始之前，需要将所有的依赖关系都清空
-            for (index in 0 until count) {
-                val node = nodes[index]
-                node.dependencies.clear()
-                node.dependents.clear()
+            val count = mNodeCount
+            if (mIds.size < count) {
+                mIds = IntArray(count)
+                mRules = arrayOfNulls(count)
+                mOrder = IntArray(count)
             }
-
             for (index in 0 until count) {
-                val node = nodes[index]
-                //取出LayoutParams，对rule进行操作
-                val layoutParams = node.view!!.layoutParams
-                if (layoutParams is LayoutParams) {
-                    val rules = layoutParams.mRules
-                    val rulesCount = rulesFilter.size
-
-                    for (filterIndex in 0 until rulesCount) {
-                        //取出对应的rule是否存在id
-                        val ruleIndex = rulesFilter[filterIndex]
-                        val id = rules[ruleIndex]
-
-                        if (id > 0) {   //存在id
-                            //从KeyNode中取到对应的Node.这个Node就是当前Node的依赖
-                            val dependency = keyNodes[id]
-                            if (dependency == null || dependency == node) {
-                                //如果为空，或者就是自己，就过掉
-                                continue
-                            }
-                            //建立相互的关系。将依赖的 dependents关联到当前
-                            //将 当前的依赖指向 dependency
-                            dependency.dependents.put(node, this)
-                            node.dependencies.put(id, dependency)
-                        }
-
-                    }
-                }
-
+                val view = nodes[index].view!!
+                mIds[index] = view.id
+                //不是我们的LayoutParams，就没有rule
+                mRules[index] = (view.layoutParams as? LayoutParams)?.mRules
             }
+            mSorter.setNodes(count, mIds)
+        }
 
-            /*
-            处理完相互的关系后，重新填词roots数组
-             */
-            val roots = mRoots
-            roots.clear()
+        /*
+        通过id找到node。只有有id的View才能被依赖
+         */
+        fun getNode(id: Int): Node? {
+            val index = mSorter.indexOfId(id)
+            return if (index < 0) null else mNodes[index]
+        }
 
-            for (index in 0 until count) {
-                val node = nodes[index]
-                if (node.dependencies.size() == 0) {
-                    roots.addLast(node)
-                }
+        /*
+        按照rules里面的规则排序，被依赖的在前面
+         */
+        fun getSortedViews(sorted: Array<View?>, rules: IntArray): Unit {
+            val order = mOrder
+            mSorter.sort(mRules, rules, order)
+            val nodes = mNodes
+            for (index in 0 until mNodeCount) {
+                sorted[index] = nodes[order[index]].view
             }
-
-            return roots
         }
 
         //这里面放了所有的视图的节点
-        @SuppressLint("SticFieldLeak")
-        class Node private constructor() {
+        class Node {
             //表达这个node中的View
             var view: View? = null
-
-            //所有的依赖于这个node的关系node
-            var dependents = ArrayMap<Node, DependencyGraph>()
-
-            //这个节点依赖的Node
-            var dependencies = SparseArray<Node>()
-
-            //是否所有的缓存
-            fun release() {
-                view = null
-                dependents.clear()
-                dependencies.clear()
-
-                sPool.release(this)
-            }
-
-            //存放一个Node的缓存池
-            companion object POOL {
-                const val POOL_LIMIT = 100
-                val sPool = Pools.SynchronizedPool<Node>(POOL_LIMIT)
-
-                fun acquire(view: View): Node {
-                    var node = sPool.acquire()
-                    if (node == null) {
-                        node = Node()
-                    }
-                    node.view = view
-                    return node
-                }
-            }
-
-
         }
 
     }
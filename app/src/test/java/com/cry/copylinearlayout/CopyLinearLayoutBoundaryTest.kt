@@ -0,0 +1,80 @@
+package com.cry.copylinearlayout
+
+import android.view.View
+import android.view.View.MeasureSpec
+import android.view.ViewGroup
+import android.widget.FrameLayout
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * layout boundary只拦child传上来的requestLayout，自己的变化还是要告诉父布局
+ */
+@RunWith(RobolectricTestRunner::class)
+class CopyLinearLayoutBoundaryTest {
+    private val context = RuntimeEnvironment.application
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun build(): Triple<FrameLayout, CopyLinearLayout, ProbeView> {
+        val root = FrameLayout(context)
+        val boundary = CopyLinearLayout(context)
+        val child = ProbeView(context, 40, 20)
+        boundary.addView(child, android.widget.LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT))
+        root.addView(boundary, FrameLayout.LayoutParams(100, 100))
+        root.measure(exactly(300), exactly(300))
+        root.layout(0, 0, 300, 300)
+        assertTrue(boundary.isLayoutBoundary())
+        return Triple(root, boundary, child)
+    }
+
+    @Test
+    fun childRequest_staysLocal() {
+        val (root, boundary, child) = build()
+
+        child.requestLayout()
+
+        assertFalse(root.isLayoutRequested)
+        assertTrue(boundary.isLayoutRequested)
+        assertEquals(1L, boundary.avoidedLayoutEscalations)
+    }
+
+    @Test
+    fun ownVisibilityChange_reachesParent() {
+        val (root, boundary, _) = build()
+
+        boundary.visibility = View.GONE
+
+        assertTrue(root.isLayoutRequested)
+        assertEquals(0L, boundary.avoidedLayoutEscalations)
+    }
+
+    @Test
+    fun ownLayoutParamsChange_reachesParent() {
+        val (root, boundary, _) = build()
+
+        val lp = FrameLayout.LayoutParams(100, 100)
+        lp.topMargin = 10
+        boundary.layoutParams = lp
+
+        assertTrue(root.isLayoutRequested)
+        assertEquals(0L, boundary.avoidedLayoutEscalations)
+    }
+
+    @Test
+    fun ownChangeAfterChildRequest_reachesParent() {
+        val (root, boundary, child) = build()
+        child.requestLayout()
+
+        boundary.setPadding(5, 5, 5, 5)
+
+        assertTrue(root.isLayoutRequested)
+        assertEquals(1L, boundary.avoidedLayoutEscalations)
+    }
+}
@@ -0,0 +1,108 @@
+package com.cry.copylinearlayout
+
+import android.view.Gravity
+import android.view.View
+import android.view.View.MeasureSpec
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * 同一棵树，分别用LinearLayout自己和headless engine去测量布局，得到的frame应该一模一样
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinearLayoutEngineParityTest {
+    private val context = RuntimeEnvironment.application
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun atMost(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.AT_MOST)
+
+    private fun unspecified() = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+
+    /**
+     * 每次调用都新建一棵一样的树
+     */
+    private fun buildTree(padded: Boolean): LinearLayout {
+        val parent = LinearLayout(context)
+        if (padded) {
+            parent.setPadding(5, 7, 11, 13)
+        }
+        fun add(desiredWidth: Int, desiredHeight: Int, width: Int, height: Int,
+                weight: Float = 0f, gravity: Int = -1, margin: Int = 0,
+                visibility: Int = View.VISIBLE) {
+            val lp = LinearLayout.LayoutParams(width, height, weight)
+            lp.gravity = gravity
+            lp.setMargins(margin, margin, margin * 2, margin)
+            val child = ProbeView(context, desiredWidth, desiredHeight)
+            child.visibility = visibility
+            parent.addView(child, lp)
+        }
+        val wrap = LinearLayout.LayoutParams.WRAP_CONTENT
+        val match = LinearLayout.LayoutParams.MATCH_PARENT
+        add(40, 20, wrap, wrap)
+        add(30, 10, match, wrap, margin = 3)
+        add(10, 10, wrap, 0, weight = 1f, gravity = Gravity.CENTER_HORIZONTAL)
+        add(50, 50, wrap, wrap, visibility = View.GONE)
+        add(20, 15, 25, wrap, weight = 2f, gravity = Gravity.END, margin = 2)
+        add(60, 5, match, 0, weight = 1f)
+        add(15, 15, wrap, 12, visibility = View.INVISIBLE)
+        return parent
+    }
+
+    private fun assertParity(widthMeasureSpec: Int, heightMeasureSpec: Int, padded: Boolean = false) {
+        val expected = buildTree(padded)
+        expected.measure(widthMeasureSpec, heightMeasureSpec)
+        expected.layout(0, 0, expected.measuredWidth, expected.measuredHeight)
+
+        val actual = buildTree(padded)
+        val adapter = HeadlessLinearLayoutAdapter()
+        adapter.measure(actual, widthMeasureSpec, heightMeasureSpec)
+        val engine = adapter.engine
+        adapter.layout(actual, 0, 0, engine.measuredWidth, engine.measuredHeight)
+
+        assertEquals(expected.measuredWidthAndState, engine.measuredWidthAndState)
+        assertEquals(expected.measuredHeightAndState, engine.measuredHeightAndState)
+        for (i in 0 until expected.childCount) {
+            val e = expected.getChildAt(i)
+            if (e.visibility == View.GONE) continue
+            val a = actual.getChildAt(i)
+            val frame = "child $i"
+            assertEquals(frame, e.measuredWidthAndState, a.measuredWidthAndState)
+            assertEquals(frame, e.measuredHeightAndState, a.measuredHeightAndState)
+            assertEquals(frame, e.left, a.left)
+            assertEquals(frame, e.top, a.top)
+            assertEquals(frame, e.right, a.right)
+            assertEquals(frame, e.bottom, a.bottom)
+        }
+    }
+
+    @Test
+    fun exactlyBothWays() = assertParity(exactly(200), exactly(300))
+
+    @Test
+    fun atMostBothWays() = assertParity(atMost(200), atMost(300))
+
+    @Test
+    fun tooShortForChildren() = assertParity(exactly(200), atMost(40))
+
+    @Test
+    fun unspecifiedHeight() = assertParity(atMost(200), unspecified())
+
+    @Test
+    fun unspecifiedWidth() = assertParity(unspecified(), exactly(300))
+
+    @Test
+    fun padded_exactlyBothWays() = assertParity(exactly(200), exactly(300), padded = true)
+
+    @Test
+    fun padded_atMostBothWays() = assertParity(atMost(200), atMost(300), padded = true)
+
+    @Test
+    fun padded_tooShortForChildren() = assertParity(exactly(200), atMost(40), padded = true)
+
+    @Test
+    fun padded_unspecifiedHeight() = assertParity(atMost(200), unspecified(), padded = true)
+}
@@ -0,0 +1,184 @@
+package com.cry.copylinearlayout
+
+import android.content.Context
+import android.graphics.Canvas
+import android.graphics.Rect
+import android.view.View
+import android.view.View.MeasureSpec
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * 打开增量layout之后，只有一个child变了的时候只测它，后面的child平移
+ * 其他东西也变了的时候要退回完整的measure/layout
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinearLayoutIncrementalLayoutTest {
+    private val context = RuntimeEnvironment.application
+
+    private val wrap = LinearLayout.LayoutParams.WRAP_CONTENT
+    private val match = LinearLayout.LayoutParams.MATCH_PARENT
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun unspecified() = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED)
+
+    /**
+     * 记下用child index画了哪些child，不真的画
+     */
+    private class RecordingLinearLayout(context: Context) : LinearLayout(context) {
+        val drawn = ArrayList<View>()
+
+        fun drawChildren(canvas: Canvas) {
+            drawn.clear()
+            dispatchDraw(canvas)
+        }
+
+        override fun drawChild(canvas: Canvas, child: View, drawingTime: Long): Boolean {
+            drawn.add(child)
+            return false
+        }
+    }
+
+    /**
+     * clip固定是clip这一块，Robolectric里面没有真的clip
+     */
+    private class ClipCanvas(private val clip: Rect) : Canvas() {
+        override fun getClipBounds(bounds: Rect?): Boolean {
+            bounds?.set(clip)
+            return !clip.isEmpty
+        }
+
+        override fun clipRect(left: Int, top: Int, right: Int, bottom: Int): Boolean = true
+
+        override fun save(): Int = 1
+
+        override fun restoreToCount(saveCount: Int) {}
+    }
+
+    private fun drawn(parent: RecordingLinearLayout, top: Int, bottom: Int): List<View> {
+        parent.drawChildren(ClipCanvas(Rect(0, top, parent.width, bottom)))
+        return parent.drawn
+    }
+
+    private fun build(vararg params: Pair<Int, Int>): Pair<RecordingLinearLayout, List<ProbeView>> {
+        val parent = RecordingLinearLayout(context)
+        parent.isIncrementalLayoutEnabled = true
+        parent.isChildIndexEnabled = true
+        val probes = params.map {
+            val probe = ProbeView(context, 40, 20)
+            parent.addView(probe, LinearLayout.LayoutParams(it.first, it.second))
+            probe
+        }
+        return Pair(parent, probes)
+    }
+
+    private fun measureAndLayout(parent: LinearLayout, widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        parent.measure(widthMeasureSpec, heightMeasureSpec)
+        parent.layout(0, 0, parent.measuredWidth, parent.measuredHeight)
+    }
+
+    private fun assertCounts(probes: List<ProbeView>, measures: IntArray, layouts: IntArray) {
+        assertArrayEquals("onMeasure", measures, probes.map { it.measureCount }.toIntArray())
+        assertArrayEquals("onLayout", layouts, probes.map { it.layoutCount }.toIntArray())
+    }
+
+    @Test
+    fun oneDirtyChild_onlyItIsMeasured_followingShifted() {
+        //下面的child高度固定，不受上面用掉多少空间的影响
+        val (parent, probes) = build(wrap to 20, wrap to wrap, wrap to 20)
+        measureAndLayout(parent, exactly(200), exactly(300))
+        probes.forEach { it.reset() }
+
+        probes[1].desiredHeight = 50
+        probes[1].requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(1L, parent.incrementalLayoutCount)
+        assertCounts(probes, intArrayOf(0, 1, 0), intArrayOf(0, 1, 0))
+        assertEquals(50, probes[1].height)
+        assertEquals(70, probes[2].top)
+        assertEquals(90, probes[2].bottom)
+    }
+
+    @Test
+    fun dirtyChildAndPaddingChange_fallsBackToFullPass() {
+        val (parent, probes) = build(match to 20, match to wrap, match to 20)
+        measureAndLayout(parent, exactly(200), exactly(300))
+        probes.forEach { it.reset() }
+
+        //padding变了，兄弟的宽度spec也跟着变
+        parent.setPadding(10, 0, 10, 0)
+        probes[1].desiredHeight = 50
+        probes[1].requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(0L, parent.incrementalLayoutCount)
+        assertEquals(180, probes[0].measuredWidth)
+        assertEquals(180, probes[1].measuredWidth)
+        assertEquals(180, probes[2].measuredWidth)
+        assertEquals(50, probes[1].measuredHeight)
+    }
+
+    @Test
+    fun unspecifiedHeight_wrapSiblings_stillIncremental() {
+        //高度UNSPECIFIED的时候，wrap_content的兄弟也不受上面空间的影响
+        val (parent, probes) = build(wrap to wrap, wrap to wrap, wrap to wrap)
+        measureAndLayout(parent, exactly(200), unspecified())
+        assertEquals(60, parent.measuredHeight)
+        probes.forEach { it.reset() }
+
+        probes[1].desiredHeight = 50
+        probes[1].requestLayout()
+        measureAndLayout(parent, exactly(200), unspecified())
+
+        assertEquals(1L, parent.incrementalLayoutCount)
+        assertCounts(probes, intArrayOf(0, 1, 0), intArrayOf(0, 1, 0))
+        assertEquals(90, parent.measuredHeight)
+        assertEquals(70, probes[2].top)
+    }
+
+    @Test
+    fun middleChildHidden_followingShifted_indexUpdated() {
+        val (parent, probes) = build(wrap to 20, wrap to 20, wrap to 20)
+        measureAndLayout(parent, exactly(200), exactly(300))
+        probes.forEach { it.reset() }
+
+        probes[1].visibility = View.GONE
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(1L, parent.incrementalLayoutCount)
+        //藏起来不用测，后面的只是平移
+        assertCounts(probes, intArrayOf(0, 0, 0), intArrayOf(0, 0, 0))
+        assertEquals(0, probes[0].top)
+        assertEquals(20, probes[2].top)
+        assertEquals(listOf(probes[0], probes[2]), drawn(parent, 0, 300))
+        assertEquals(listOf(probes[2]), drawn(parent, 20, 40))
+        assertEquals(emptyList<View>(), drawn(parent, 40, 60))
+    }
+
+    @Test
+    fun middleChildShown_onlyItIsMeasured_indexUpdated() {
+        val (parent, probes) = build(wrap to 20, wrap to 20, wrap to 20)
+        probes[1].visibility = View.GONE
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertEquals(20, probes[2].top)
+        probes.forEach { it.reset() }
+
+        probes[1].visibility = View.VISIBLE
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(1L, parent.incrementalLayoutCount)
+        assertCounts(probes, intArrayOf(0, 1, 0), intArrayOf(0, 1, 0))
+        assertEquals(0, probes[0].top)
+        assertEquals(20, probes[1].top)
+        assertEquals(40, probes[2].top)
+        assertEquals(listOf(probes[0], probes[1], probes[2]), drawn(parent, 0, 300))
+        assertEquals(listOf(probes[1]), drawn(parent, 20, 40))
+        assertEquals(listOf(probes[2]), drawn(parent, 40, 60))
+    }
+}
@@ -0,0 +1,110 @@
+package com.cry.copylinearlayout
+
+import android.text.SpannableString
+import android.text.Spanned
+import android.text.style.RelativeSizeSpan
+import android.view.View.MeasureSpec
+import android.view.ViewGroup
+import android.widget.TextView
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * 用intrinsic size先定自己宽度的measure，结果要和普通的measure一样
+ * 普通的measure用系统的LinearLayout来算
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinearLayoutIntrinsicSizeTest {
+    private val context = RuntimeEnvironment.application
+
+    private val wrap = ViewGroup.LayoutParams.WRAP_CONTENT
+    private val match = ViewGroup.LayoutParams.MATCH_PARENT
+
+    private fun atMost(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.AT_MOST)
+
+    private fun text(configure: TextView.() -> Unit): TextView {
+        val view = TextView(context)
+        view.maxLines = 1
+        view.configure()
+        return view
+    }
+
+    /**
+     * 两边放一样的match_parent的TextView，自己的宽度就是它的intrinsic width
+     * 比较自己和child的大小
+     * @return 省掉的measure次数
+     */
+    private fun compare(configure: TextView.() -> Unit): Long {
+        val negotiated = LinearLayout(context)
+        val negotiatedText = text(configure)
+        negotiated.addView(negotiatedText, LinearLayout.LayoutParams(match, wrap))
+        negotiated.measure(atMost(500), atMost(500))
+
+        val normal = android.widget.LinearLayout(context)
+        normal.orientation = android.widget.LinearLayout.VERTICAL
+        val normalText = text(configure)
+        normal.addView(normalText, android.widget.LinearLayout.LayoutParams(match, wrap))
+        normal.measure(atMost(500), atMost(500))
+
+        //state也要一样，比如太长的时候不能多出MEASURED_STATE_TOO_SMALL
+        assertEquals("width and state", normal.measuredWidthAndState, negotiated.measuredWidthAndState)
+        assertEquals("height and state", normal.measuredHeightAndState, negotiated.measuredHeightAndState)
+        assertEquals("text width", normalText.measuredWidth, negotiatedText.measuredWidth)
+        assertEquals("text height", normalText.measuredHeight, negotiatedText.measuredHeight)
+        return negotiated.savedMeasureCount
+    }
+
+    @Test
+    fun plainText_negotiated() {
+        assertEquals(1L, compare { text = "A single line of plain text" })
+    }
+
+    @Test
+    fun paddingAndMinimumWidth_negotiated() {
+        assertEquals(1L, compare {
+            text = "short"
+            setPadding(7, 3, 9, 3)
+            minimumWidth = 120
+        })
+    }
+
+    @Test
+    fun overlongText_clampedToSpec() {
+        assertEquals(1L, compare { text = "overlong ".repeat(200) })
+    }
+
+    @Test
+    fun spannedText_measured() {
+        val spanned = SpannableString("A single line with a bigger word")
+        spanned.setSpan(RelativeSizeSpan(2f), 2, 8, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE)
+        assertEquals(0L, compare { text = spanned })
+    }
+
+    @Test
+    fun allCaps_measured() {
+        assertEquals(0L, compare {
+            text = "lower case text"
+            setAllCaps(true)
+        })
+    }
+
+    @Test
+    fun minWidthAndMinEms_measured() {
+        assertEquals(0L, compare {
+            text = "short"
+            minWidth = 200
+        })
+        assertEquals(0L, compare {
+            text = "short"
+            minEms = 20
+        })
+    }
+
+    @Test
+    fun embeddedNewline_measured() {
+        assertEquals(0L, compare { text = "first line\nsecond line" })
+    }
+}
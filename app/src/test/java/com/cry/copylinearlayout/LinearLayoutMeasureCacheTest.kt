@@ -0,0 +1,61 @@
+package com.cry.copylinearlayout
+
+import android.view.View.MeasureSpec
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * 同一次遍历里被测量两次（比如放在ScrollView里）的时候，缓存不能把child的改动吞掉
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinearLayoutMeasureCacheTest {
+    private val context = RuntimeEnvironment.application
+
+    private val wrap = LinearLayout.LayoutParams.WRAP_CONTENT
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun build(): Pair<LinearLayout, ProbeView> {
+        val parent = LinearLayout(context)
+        val child = ProbeView(context, 40, 20)
+        parent.addView(child, LinearLayout.LayoutParams(wrap, wrap))
+        parent.measure(exactly(200), exactly(300))
+        parent.layout(0, 0, 200, 300)
+        return Pair(parent, child)
+    }
+
+    @Test
+    fun secondMeasureWithSameSpecs_isCacheHit() {
+        val (parent, child) = build()
+        parent.requestLayout()
+        parent.measure(exactly(200), exactly(300))
+        child.reset()
+        val hits = parent.measureCacheHitCount
+
+        parent.measure(exactly(200), exactly(300))
+
+        assertEquals(hits + 1, parent.measureCacheHitCount)
+        assertEquals(0, child.measureCount)
+    }
+
+    @Test
+    fun childRequestsLayoutWhileParentAlreadyRequested_isRemeasured() {
+        val (parent, child) = build()
+        parent.requestLayout()
+        parent.measure(exactly(200), exactly(300))
+        child.reset()
+        val hits = parent.measureCacheHitCount
+
+        //父布局已经requestLayout了，child的请求传不到父布局
+        child.requestLayout()
+        assertTrue(parent.isLayoutRequested)
+        parent.measure(exactly(200), exactly(300))
+
+        assertEquals(hits, parent.measureCacheHitCount)
+        assertEquals(1, child.measureCount)
+    }
+}
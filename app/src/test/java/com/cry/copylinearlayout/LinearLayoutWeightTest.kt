@@ -0,0 +1,93 @@
+package com.cry.copylinearlayout
+
+import android.view.View.MeasureSpec
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * weight的分配不应该导致child被测量两次
+ */
+@RunWith(RobolectricTestRunner::class)
+class LinearLayoutWeightTest {
+    private val context = RuntimeEnvironment.application
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun atMost(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.AT_MOST)
+
+    private fun add(parent: LinearLayout, child: ProbeView, height: Int, weight: Float): ProbeView {
+        parent.addView(child, LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT, height, weight))
+        return child
+    }
+
+    @Test
+    fun zeroHeightWeightedChildren_measuredOnceUnderExactly() {
+        val parent = LinearLayout(context)
+        val a = add(parent, ProbeView(context, 10, 10), 0, 1f)
+        val b = add(parent, ProbeView(context, 10, 10), 0, 2f)
+        val fixed = add(parent, ProbeView(context, 10, 10), 30, 0f)
+
+        parent.measure(exactly(100), exactly(300))
+
+        assertEquals(1, a.measureCount)
+        assertEquals(1, b.measureCount)
+        assertEquals(1, fixed.measureCount)
+        assertEquals(90, a.measuredHeight)
+        assertEquals(180, b.measuredHeight)
+        assertEquals(30, fixed.measuredHeight)
+    }
+
+    @Test
+    fun roundingRemainder_goesToLastWeightedChild() {
+        val parent = LinearLayout(context)
+        val a = add(parent, ProbeView(context), 0, 1f)
+        val b = add(parent, ProbeView(context), 0, 1f)
+        val c = add(parent, ProbeView(context), 0, 1f)
+
+        parent.measure(exactly(100), exactly(100))
+
+        assertEquals(33, a.measuredHeight)
+        assertEquals(33, b.measuredHeight)
+        assertEquals(34, c.measuredHeight)
+    }
+
+    @Test
+    fun fractionalWeights_fillHeightExactly() {
+        //0.1 + 0.2 + 0.7 减来减去，float剩下的和最后一个的weight不完全一样
+        for (height in 1..100) {
+            val parent = LinearLayout(context)
+            val children = listOf(0.1f, 0.2f, 0.7f).map { add(parent, ProbeView(context), 0, it) }
+
+            parent.measure(exactly(100), exactly(height))
+
+            assertEquals("height $height", height, children.sumBy { it.measuredHeight })
+        }
+    }
+
+    @Test
+    fun noExcessSpace_weightedChildNotRemeasured() {
+        val parent = LinearLayout(context)
+        val a = add(parent, ProbeView(context, 10, 50), LinearLayout.LayoutParams.WRAP_CONTENT, 1f)
+        val b = add(parent, ProbeView(context, 10, 50), 50, 0f)
+
+        parent.measure(exactly(100), atMost(300))
+
+        assertEquals(1, a.measureCount)
+        assertEquals(1, b.measureCount)
+        assertEquals(100, parent.measuredHeight)
+    }
+
+    @Test
+    fun noWeights_everyChildMeasuredOnce() {
+        val parent = LinearLayout(context)
+        val children = (0 until 5).map { add(parent, ProbeView(context, 10, 20), 20, 0f) }
+
+        parent.measure(exactly(100), exactly(300))
+
+        children.forEach { assertEquals(1, it.measureCount) }
+    }
+}
@@ -0,0 +1,378 @@
+package com.cry.copylinearlayout
+
+import android.view.View
+import android.view.View.MeasureSpec
+import android.view.ViewGroup
+import com.cry.copylinearlayout.relative.SimpleDoubleRelativeLayout
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+
+/**
+ * 每个自定义ViewGroup在各种情况下，child的onMeasure/onLayout到底被调用了几次
+ * 这里的次数都是精确的。多测量了一次，这里就会失败
+ *
+ * 如果是有意的改动（比如少测了一次），就把期望值一起改掉
+ */
+@RunWith(RobolectricTestRunner::class)
+class MeasureCountRegressionTest {
+    private val context = RuntimeEnvironment.application
+
+    private val wrap = ViewGroup.LayoutParams.WRAP_CONTENT
+    private val match = ViewGroup.LayoutParams.MATCH_PARENT
+
+    private fun exactly(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY)
+
+    private fun atMost(size: Int) = MeasureSpec.makeMeasureSpec(size, MeasureSpec.AT_MOST)
+
+    /**
+     * 三个LinearLayout的实现，用的LayoutParams不一样
+     */
+    private enum class Linear { LINEAR, COPY, SIMPLE }
+
+    private class Child(val width: Int, val height: Int,
+                        val weight: Float = 0f,
+                        val desiredWidth: Int = 40,
+                        val desiredHeight: Int = 20,
+                        val visibility: Int = View.VISIBLE)
+
+    private fun buildLinear(kind: Linear, children: List<Child>): Pair<ViewGroup, List<ProbeView>> {
+        val parent: ViewGroup = when (kind) {
+            Linear.LINEAR -> LinearLayout(context)
+            Linear.COPY -> CopyLinearLayout(context)
+            Linear.SIMPLE -> SimpleLinearLayout(context)
+        }
+        val probes = children.map {
+            val probe = ProbeView(context, it.desiredWidth, it.desiredHeight)
+            probe.visibility = it.visibility
+            val lp: ViewGroup.LayoutParams = if (kind == Linear.LINEAR) {
+                LinearLayout.LayoutParams(it.width, it.height, it.weight)
+            } else {
+                android.widget.LinearLayout.LayoutParams(it.width, it.height, it.weight)
+            }
+            parent.addView(probe, lp)
+            probe
+        }
+        return Pair(parent, probes)
+    }
+
+    private fun measureAndLayout(parent: ViewGroup, widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        parent.measure(widthMeasureSpec, heightMeasureSpec)
+        parent.layout(0, 0, parent.measuredWidth, parent.measuredHeight)
+    }
+
+    private fun assertCounts(name: String, probes: List<ProbeView>,
+                             measures: IntArray, layouts: IntArray? = null) {
+        assertArrayEquals("$name onMeasure", measures, probes.map { it.measureCount }.toIntArray())
+        if (layouts != null) {
+            assertArrayEquals("$name onLayout", layouts, probes.map { it.layoutCount }.toIntArray())
+        }
+    }
+
+    /**
+     * 对三个LinearLayout跑同一个场景，期望值按实现分开给
+     */
+    private fun checkLinear(children: List<Child>, widthMeasureSpec: Int, heightMeasureSpec: Int,
+                            expected: Map<Linear, IntArray>, layouts: IntArray) {
+        for ((kind, measures) in expected) {
+            val (parent, probes) = buildLinear(kind, children)
+            measureAndLayout(parent, widthMeasureSpec, heightMeasureSpec)
+            assertCounts(kind.name, probes, measures, layouts)
+        }
+    }
+
+    private fun allLinear(measures: IntArray) =
+            mapOf(Linear.LINEAR to measures, Linear.COPY to measures, Linear.SIMPLE to measures)
+
+    @Test
+    fun linear_noWeight_exactly() {
+        val children = listOf(Child(wrap, 20), Child(wrap, wrap), Child(match, 30))
+        checkLinear(children, exactly(200), exactly(300),
+                allLinear(intArrayOf(1, 1, 1)), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun linear_noWeight_atMost() {
+        val children = listOf(Child(wrap, 20), Child(wrap, wrap), Child(wrap, 30))
+        checkLinear(children, atMost(200), atMost(300),
+                allLinear(intArrayOf(1, 1, 1)), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun linear_matchWidth_onlyNarrowChildRemeasured() {
+        // 宽度最后是120，已经是120的match child不用再测一次
+        val children = listOf(
+                Child(match, 20, desiredWidth = 50),
+                Child(match, 20, desiredWidth = 120),
+                Child(wrap, 20, desiredWidth = 120))
+        checkLinear(children, atMost(200), atMost(300),
+                allLinear(intArrayOf(2, 1, 1)), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun linear_zeroHeightWeights_exactly() {
+        val children = listOf(Child(match, 0, 1f), Child(match, 0, 2f), Child(match, 30))
+        checkLinear(children, exactly(200), exactly(300),
+                allLinear(intArrayOf(1, 1, 1)), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun linear_zeroHeightWeights_atMost_sharesChangeHeights() {
+        // 先按wrap测出10和30，再平分成20和20，两个都要再测一次
+        // CopyLinearLayout不支持weight，高度0就是0
+        val children = listOf(
+                Child(match, 0, 1f, desiredHeight = 10),
+                Child(match, 0, 1f, desiredHeight = 30))
+        checkLinear(children, exactly(200), atMost(300), mapOf(
+                Linear.LINEAR to intArrayOf(2, 2),
+                Linear.COPY to intArrayOf(1, 1),
+                Linear.SIMPLE to intArrayOf(2, 2)), intArrayOf(1, 1))
+    }
+
+    @Test
+    fun linear_zeroHeightWeights_atMost_sharesKeepHeights() {
+        // 平分之后高度没有变，LinearLayout不再测第二次
+        val children = listOf(
+                Child(match, 0, 1f, desiredHeight = 20),
+                Child(match, 0, 1f, desiredHeight = 20))
+        checkLinear(children, exactly(200), atMost(300), mapOf(
+                Linear.LINEAR to intArrayOf(1, 1),
+                Linear.COPY to intArrayOf(1, 1),
+                Linear.SIMPLE to intArrayOf(2, 2)), intArrayOf(1, 1))
+    }
+
+    @Test
+    fun linear_wrapHeightWeights_atMost_noExcess() {
+        // AT_MOST的时候自己就是child的总高度，没有多余的空间可以分
+        val children = listOf(Child(match, wrap, 1f), Child(match, wrap, 1f))
+        checkLinear(children, exactly(200), atMost(300),
+                allLinear(intArrayOf(1, 1)), intArrayOf(1, 1))
+    }
+
+    @Test
+    fun linear_goneChild_neverMeasured() {
+        val children = listOf(Child(wrap, 20), Child(wrap, 20, visibility = View.GONE),
+                Child(wrap, 20, visibility = View.INVISIBLE))
+        checkLinear(children, exactly(200), exactly(300),
+                allLinear(intArrayOf(1, 0, 1)), intArrayOf(1, 0, 1))
+    }
+
+    @Test
+    fun linear_oneChildRequestsLayout_onlyItIsMeasured() {
+        val children = listOf(Child(wrap, 20), Child(wrap, 20), Child(wrap, 20))
+        for (kind in Linear.values()) {
+            val (parent, probes) = buildLinear(kind, children)
+            measureAndLayout(parent, exactly(200), exactly(300))
+            probes.forEach { it.reset() }
+
+            probes[1].requestLayout()
+            measureAndLayout(parent, exactly(200), exactly(300))
+
+            assertCounts(kind.name, probes, intArrayOf(0, 1, 0), intArrayOf(0, 1, 0))
+        }
+    }
+
+    private class RelativeChild(val id: Int,
+                                val leftOf: Int = 0,
+                                val above: Int = 0,
+                                val width: Int = ViewGroup.LayoutParams.WRAP_CONTENT,
+                                val height: Int = ViewGroup.LayoutParams.WRAP_CONTENT,
+                                val topMargin: Int = 0,
+                                val visibility: Int = View.VISIBLE)
+
+    private fun buildRelative(children: List<RelativeChild>): Pair<SimpleDoubleRelativeLayout, List<ProbeView>> {
+        val parent = SimpleDoubleRelativeLayout(context)
+        val probes = children.map {
+            val probe = ProbeView(context, 40, 20)
+            probe.id = it.id
+            probe.visibility = it.visibility
+            val lp = SimpleDoubleRelativeLayout.LayoutParams(it.width, it.height)
+            lp.mRules[SimpleDoubleRelativeLayout.LEFT_OF] = it.leftOf
+            lp.mRules[SimpleDoubleRelativeLayout.ABOVE] = it.above
+            lp.topMargin = it.topMargin
+            parent.addView(probe, lp)
+            probe
+        }
+        return Pair(parent, probes)
+    }
+
+    private fun assertRelativeCounters(parent: SimpleDoubleRelativeLayout, measured: Long, skipped: Long) {
+        assertEquals("childMeasureCount", measured, parent.childMeasureCount)
+        assertEquals("childMeasureSkippedCount", skipped, parent.childMeasureSkippedCount)
+    }
+
+    /*
+    SimpleDoubleRelativeLayout 先横向测一遍，再纵向测一遍
+    纵向测量的spec和横向一样的时候就不测第二次，所以大部分child只测一次
+     */
+    @Test
+    fun relative_noRules_exactly() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1), RelativeChild(2), RelativeChild(3, width = match)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertCounts("relative", probes, intArrayOf(1, 1, 1), intArrayOf(1, 1, 1))
+        assertRelativeCounters(parent, 3, 3)
+    }
+
+    @Test
+    fun relative_noRules_margins_unspecified() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, topMargin = 5), RelativeChild(2, height = 50), RelativeChild(3)))
+        parent.measure(exactly(200), MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED))
+        assertCounts("relative", probes, intArrayOf(1, 1, 1))
+
+        val (exactParent, exactProbes) = buildRelative(listOf(
+                RelativeChild(1, topMargin = 5), RelativeChild(2, height = 50), RelativeChild(3)))
+        exactParent.measure(exactly(200), exactly(300))
+        assertCounts("relative", exactProbes, intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun relative_aboveAnchor_fixedHeight_measuredTwice() {
+        // 有纵向锚点，横向的时候还不知道高度的约束，固定高度的child纵向会变成EXACTLY，要再测一次
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, above = 2, height = 50), RelativeChild(2)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertCounts("relative", probes, intArrayOf(2, 1), intArrayOf(1, 1))
+        assertRelativeCounters(parent, 3, 1)
+    }
+
+    @Test
+    fun relative_leftOfChain_exactly() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, leftOf = 2), RelativeChild(2, leftOf = 3), RelativeChild(3)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertCounts("relative", probes, intArrayOf(1, 1, 1), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun relative_aboveChain_exactly() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, above = 2), RelativeChild(2, above = 3), RelativeChild(3)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertCounts("relative", probes, intArrayOf(1, 1, 1), intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun relative_bothAxes_atMost() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, leftOf = 3, above = 2), RelativeChild(2), RelativeChild(3)))
+        parent.measure(atMost(200), atMost(300))
+        assertCounts("relative", probes, intArrayOf(1, 1, 1))
+    }
+
+    @Test
+    fun relative_goneChild_neverMeasured() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1), RelativeChild(2, visibility = View.GONE), RelativeChild(3)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertCounts("relative", probes, intArrayOf(1, 0, 1), intArrayOf(1, 0, 1))
+    }
+
+    @Test
+    fun relative_oneChildRequestsLayout_onlyItIsMeasured() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, leftOf = 2), RelativeChild(2), RelativeChild(3, above = 2)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        probes.forEach { it.reset() }
+
+        probes[1].requestLayout()
+        parent.measure(exactly(200), exactly(300))
+
+        assertCounts("relative", probes, intArrayOf(0, 1, 0))
+    }
+
+    @Test
+    fun relative_childMovesInSameBounds_onlyItIsLaidOut() {
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1), RelativeChild(2, leftOf = 1), RelativeChild(3)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        val laidOut = parent.childLayoutCount
+        val skipped = parent.childLayoutSkippedCount
+        probes.forEach { it.reset() }
+
+        //只改margin，child自己没有requestLayout，父布局的大小也没变
+        (probes[0].layoutParams as SimpleDoubleRelativeLayout.LayoutParams).topMargin = 10
+        parent.requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(10, probes[0].top)
+        assertEquals(laidOut + 1, parent.childLayoutCount)
+        assertEquals(skipped + 2, parent.childLayoutSkippedCount)
+        assertCounts("relative", probes, intArrayOf(1, 0, 0), intArrayOf(1, 0, 0))
+    }
+
+    @Test
+    fun relative_oneChildResized_otherSkipped() {
+        val (parent, probes) = buildRelative(listOf(RelativeChild(1), RelativeChild(2)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        val laidOut = parent.childLayoutCount
+        val skipped = parent.childLayoutSkippedCount
+        probes.forEach { it.reset() }
+
+        //只改第一个的宽度，第二个的spec和位置都没变
+        probes[0].layoutParams.width = 60
+        parent.requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(60, probes[0].width)
+        assertEquals(laidOut + 1, parent.childLayoutCount)
+        assertEquals(skipped + 1, parent.childLayoutSkippedCount)
+        assertCounts("relative", probes, intArrayOf(1, 0), intArrayOf(1, 0))
+    }
+
+    @Test
+    fun relative_childMovedBySomeoneElse_putBack() {
+        val (parent, probes) = buildRelative(listOf(RelativeChild(1), RelativeChild(2, leftOf = 1)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        val top = probes[0].top
+
+        //不是这个layout挪的，layoutParams里算出来的位置没变
+        probes[0].offsetTopAndBottom(7)
+        parent.requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(top, probes[0].top)
+    }
+
+    @Test
+    fun relative_rulesWrittenDirectly_resorted() {
+        val (parent, probes) = buildRelative(listOf(RelativeChild(1), RelativeChild(2)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        val sorted = parent.sortCount
+
+        //不走addRule，直接写mRules
+        (probes[1].layoutParams as SimpleDoubleRelativeLayout.LayoutParams).mRules[SimpleDoubleRelativeLayout.ABOVE] = 1
+        parent.requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(sorted + 1, parent.sortCount)
+        assertEquals(probes[0].top, probes[1].bottom)
+
+        //rule没变，不用再排序
+        parent.requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+        assertEquals(sorted + 1, parent.sortCount)
+    }
+
+    @Test
+    fun relative_incremental_onlyDependentsRevisited() {
+        //1依赖2，4依赖1，3和谁都没关系
+        val (parent, probes) = buildRelative(listOf(
+                RelativeChild(1, leftOf = 2), RelativeChild(2), RelativeChild(3), RelativeChild(4, leftOf = 1)))
+        measureAndLayout(parent, exactly(200), exactly(300))
+        val measured = parent.childMeasureCount
+        val skipped = parent.childMeasureSkippedCount
+        probes.forEach { it.reset() }
+
+        probes[1].requestLayout()
+        measureAndLayout(parent, exactly(200), exactly(300))
+
+        assertEquals(1L, parent.incrementalMeasureCount)
+        assertRelativeCounters(parent, measured + 3, skipped + 3)
+        assertCounts("relative", probes, intArrayOf(0, 1, 0, 0), intArrayOf(0, 1, 0, 0))
+    }
+}
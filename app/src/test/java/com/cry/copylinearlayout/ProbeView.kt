@@ -0,0 +1,30 @@
+package com.cry.copylinearlayout
+
+import android.content.Context
+import android.view.View
+
+/**
+ * 用来数onMeasure/onLayout次数的探针View
+ * wrap_content的时候，想要的大小就是 desiredWidth x desiredHeight
+ */
+class ProbeView(context: Context,
+                var desiredWidth: Int = 0,
+                var desiredHeight: Int = 0) : View(context) {
+    var measureCount = 0
+    var layoutCount = 0
+
+    override fun onMeasure(widthMeasureSpec: Int, heightMeasureSpec: Int) {
+        measureCount++
+        setMeasuredDimension(View.resolveSize(desiredWidth, widthMeasureSpec),
+                View.resolveSize(desiredHeight, heightMeasureSpec))
+    }
+
+    override fun onLayout(changed: Boolean, left: Int, top: Int, right: Int, bottom: Int) {
+        layoutCount++
+    }
+
+    fun reset() {
+        measureCount = 0
+        layoutCount = 0
+    }
+}
@@ -0,0 +1,50 @@
+package com.cry.copylinearlayout
+
+import android.graphics.Path
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * 镜像的形状边界和周长都一样，缓存里要能同时放下，来回画的时候不能再模糊
+ */
+@RunWith(RobolectricTestRunner::class)
+class ShadowCacheTest {
+
+    private fun triangle(up: Boolean): Path {
+        val path = Path()
+        if (up) {
+            path.moveTo(0f, SIZE.toFloat())
+            path.lineTo(SIZE / 2f, 0f)
+            path.lineTo(SIZE.toFloat(), SIZE.toFloat())
+        } else {
+            path.moveTo(0f, 0f)
+            path.lineTo(SIZE / 2f, SIZE.toFloat())
+            path.lineTo(SIZE.toFloat(), 0f)
+        }
+        path.close()
+        return path
+    }
+
+    @Test
+    fun mirroredPaths_bothStayCached() {
+        val cache = ShadowCache(1024 * 1024)
+        val up = triangle(true)
+        val down = triangle(false)
+
+        val upShadow = cache.getPath(up, SIZE, SIZE, RADIUS)
+        val downShadow = cache.getPath(down, SIZE, SIZE, RADIUS)
+        repeat(10) {
+            assertEquals(upShadow, cache.getPath(up, SIZE, SIZE, RADIUS))
+            assertEquals(downShadow, cache.getPath(down, SIZE, SIZE, RADIUS))
+        }
+
+        assertEquals(2L, cache.blurCount)
+    }
+
+    companion object {
+        private const val SIZE = 40
+        private const val RADIUS = 7.5f
+    }
+}
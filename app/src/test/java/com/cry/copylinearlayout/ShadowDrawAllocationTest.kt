@@ -0,0 +1,131 @@
+package com.cry.copylinearlayout
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Paint
+import android.graphics.Rect
+import android.view.View
+import android.view.View.MeasureSpec
+import com.github.florent37.shapeofview.shapes.TriangleView
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.RuntimeEnvironment
+import org.robolectric.shadows.ShadowLooper
+import java.lang.management.ManagementFactory
+
+/**
+ * SimpleLinearLayout画阴影的时候，只要child的位置没变，就不能new任何东西
+ */
+@RunWith(RobolectricTestRunner::class)
+class ShadowDrawAllocationTest {
+    private val context = RuntimeEnvironment.application
+
+    /**
+     * 只数画了几次，不走Robolectric的ShadowCanvas，它会把每一次draw都记下来
+     */
+    private class CountingCanvas : Canvas() {
+        var drawCount = 0
+        //阴影还没模糊好的时候画的方框
+        var placeholderCount = 0
+
+        //Robolectric里面没有真的clip，当成整个都看得见
+        override fun getClipBounds(bounds: Rect?): Boolean {
+            bounds?.set(0, 0, Int.MAX_VALUE, Int.MAX_VALUE)
+            return true
+        }
+
+        override fun drawBitmap(bitmap: Bitmap, left: Float, top: Float, paint: Paint?) {
+            drawCount++
+        }
+
+        override fun drawBitmap(bitmap: Bitmap, src: Rect?, dst: Rect, paint: Paint?) {
+            drawCount++
+        }
+
+        override fun drawRect(r: Rect, paint: Paint) {
+            placeholderCount++
+        }
+    }
+
+    private val threadBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+
+    private fun allocatedBytes() = threadBean.getThreadAllocatedBytes(Thread.currentThread().id)
+
+    @Test
+    fun drawShadows_steadyState_allocatesNothing() {
+        val layout = SimpleLinearLayout(context)
+        for (i in 0 until CHILD_COUNT) {
+            //每10个里面有一个太小，放不下九宫格，走整张bitmap
+            //SimpleLinearLayout摆放的时候高度会少PADDING_INT
+            val size = if (i % 10 == 0) 8 else 40
+            layout.addView(View(context), android.widget.LinearLayout.LayoutParams(size * 2, size))
+        }
+        layout.measure(MeasureSpec.makeMeasureSpec(400, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(3000, MeasureSpec.EXACTLY))
+        layout.layout(0, 0, layout.measuredWidth, layout.measuredHeight)
+
+        val canvas = CountingCanvas()
+        //第一次要模糊、要建每个child的阴影，后面几次让代码都跑热
+        repeat(10) { layout.drawShadows(canvas) }
+        canvas.drawCount = 0
+
+        //取一次已分配字节数本身也会new一点东西，先量出来减掉
+        val start = allocatedBytes()
+        val overhead = allocatedBytes() - start
+        val before = allocatedBytes()
+        for (frame in 0 until FRAMES) {
+            layout.drawShadows(canvas)
+        }
+        val allocated = allocatedBytes() - before - overhead
+
+        assertEquals(FRAMES * 9 * CHILD_COUNT * 9 / 10 + FRAMES * CHILD_COUNT / 10, canvas.drawCount)
+        assertEquals("bytes allocated over $FRAMES frames", 0L, allocated)
+    }
+
+    /**
+     * ShapeOfView的阴影是后台模糊的，模糊好了之后每一帧只是贴一张缓存的bitmap
+     */
+    @Test
+    fun drawShadows_shapeOfViewChildren_steadyState_allocatesNothing() {
+        val layout = SimpleLinearLayout(context)
+        for (i in 0 until SHAPE_COUNT) {
+            layout.addView(TriangleView(context), android.widget.LinearLayout.LayoutParams(80, 40))
+        }
+        layout.measure(MeasureSpec.makeMeasureSpec(400, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(3000, MeasureSpec.EXACTLY))
+        layout.layout(0, 0, layout.measuredWidth, layout.measuredHeight)
+
+        val canvas = CountingCanvas()
+        //第一次画的时候交给后台模糊，等结果回到主线程，直到一个占位的方框都不画
+        val deadline = System.currentTimeMillis() + 10_000
+        do {
+            Thread.sleep(1)
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks()
+            canvas.placeholderCount = 0
+            layout.drawShadows(canvas)
+        } while (canvas.placeholderCount > 0 && System.currentTimeMillis() < deadline)
+        assertEquals("placeholders", 0, canvas.placeholderCount)
+        repeat(10) { layout.drawShadows(canvas) }
+        canvas.drawCount = 0
+
+        val start = allocatedBytes()
+        val overhead = allocatedBytes() - start
+        val before = allocatedBytes()
+        for (frame in 0 until FRAMES) {
+            layout.drawShadows(canvas)
+        }
+        val allocated = allocatedBytes() - before - overhead
+
+        assertEquals(0, canvas.placeholderCount)
+        assertEquals(FRAMES * SHAPE_COUNT, canvas.drawCount)
+        assertEquals("bytes allocated over $FRAMES frames", 0L, allocated)
+    }
+
+    companion object {
+        private const val SHAPE_COUNT = 20
+        private const val CHILD_COUNT = 100
+        private const val FRAMES = 1000
+    }
+}
@@ -0,0 +1,102 @@
+package com.cry.benchmark;
+
+import com.cry.layoutengine.DependencySorter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorting the children of a relative layout along both axes, with the CSR
+ * {@link DependencySorter} against the map based graph it replaced. The
+ * children form a random DAG: each one is anchored to up to two earlier
+ * children per axis, and the children are shuffled so that index order is
+ * not already a valid order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DependencySortBenchmark {
+    // Rule indices from SimpleDoubleRelativeLayout.
+    private static final int VERB_COUNT = 22;
+    private static final int[] RULES_VERTICAL = {2, 3, 4, 6, 8};
+    private static final int[] RULES_HORIZONTAL = {0, 1, 5, 7, 16, 17, 18, 19};
+
+    @Param({"10", "100", "1000", "5000"})
+    public int nodeCount;
+
+    private int[] mIds;
+    private int[][] mRules;
+    private int[] mSorted;
+
+    private final DependencySorter mSorter = new DependencySorter();
+    private final MapDependencyGraph mGraph = new MapDependencyGraph();
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+        // position[i] is where the i-th node of the DAG ends up as a child.
+        final int[] position = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            position[i] = i;
+        }
+        for (int i = nodeCount - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int swap = position[i];
+            position[i] = position[j];
+            position[j] = swap;
+        }
+
+        mIds = new int[nodeCount];
+        mRules = new int[nodeCount][];
+        mSorted = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            final int child = position[i];
+            final int[] rules = new int[VERB_COUNT];
+            mIds[child] = i + 1;
+            mRules[child] = rules;
+            if (i == 0) {
+                continue;
+            }
+            // Anchor ids are node number + 1, and only point backwards.
+            rules[RULES_HORIZONTAL[random.nextInt(RULES_HORIZONTAL.length)]] = random.nextInt(i) + 1;
+            rules[RULES_VERTICAL[random.nextInt(RULES_VERTICAL.length)]] = random.nextInt(i) + 1;
+            if (random.nextBoolean()) {
+                rules[RULES_HORIZONTAL[random.nextInt(RULES_HORIZONTAL.length)]] = random.nextInt(i) + 1;
+            }
+            if (random.nextBoolean()) {
+                rules[RULES_VERTICAL[random.nextInt(RULES_VERTICAL.length)]] = random.nextInt(i) + 1;
+            }
+        }
+    }
+
+    @Benchmark
+    public int csr() {
+        mSorter.setNodes(nodeCount, mIds);
+        mSorter.sort(mRules, RULES_VERTICAL, mSorted);
+        final int first = mSorted[0];
+        mSorter.sort(mRules, RULES_HORIZONTAL, mSorted);
+        return first + mSorted[0];
+    }
+
+    @Benchmark
+    public int maps() {
+        final MapDependencyGraph graph = mGraph;
+        graph.clear();
+        for (int i = 0; i < nodeCount; i++) {
+            graph.add(i, mIds[i], mRules[i]);
+        }
+        graph.getSortedViews(mSorted, RULES_VERTICAL);
+        final int first = mSorted[0];
+        graph.getSortedViews(mSorted, RULES_HORIZONTAL);
+        return first + mSorted[0];
+    }
+}
@@ -0,0 +1,80 @@
+package com.cry.benchmark;
+
+import com.cry.layoutengine.DesiredSizeMeasurer;
+import com.cry.layoutengine.LayoutNodes;
+import com.cry.layoutengine.LinearLayoutEngine;
+import com.cry.layoutengine.MeasureSpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measure and layout loops of a vertical LinearLayout, run through
+ * {@link LinearLayoutEngine} so that they work on a plain JVM. Leaves are
+ * fixed-size stubs, so the numbers are the cost of the layout itself.
+ * <p>
+ * This is the headless replica only. The measure cache, incremental layout
+ * and intrinsic size paths of the app's LinearLayout, and the other custom
+ * layouts, are not exercised here; LayoutPassBenchmark in
+ * {@code app/src/androidTest} runs the real views on a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LinearLayoutEngineBenchmark {
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 1920;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int childCount;
+
+    @Param({"false", "true"})
+    public boolean weighted;
+
+    @Param({"EXACTLY", "AT_MOST"})
+    public String heightMode;
+
+    private final LinearLayoutEngine mEngine = new LinearLayoutEngine();
+    private final LayoutNodes mNodes = new LayoutNodes();
+    private final DesiredSizeMeasurer mMeasurer = new DesiredSizeMeasurer();
+    private int mWidthMeasureSpec;
+    private int mHeightMeasureSpec;
+
+    @Setup
+    public void setUp() {
+        mNodes.clear();
+        for (int i = 0; i < childCount; i++) {
+            // Every other child shares the excess space when weighted.
+            final boolean share = weighted && (i & 1) == 0;
+            final int width = i % 3 == 0 ? MeasureSpec.MATCH_PARENT : MeasureSpec.WRAP_CONTENT;
+            final int height = share ? 0 : MeasureSpec.WRAP_CONTENT;
+            mNodes.add(width, height, share ? 1f : 0f, -1, 2, 1, 2, 1, LayoutNodes.VISIBLE);
+            mMeasurer.setDesiredSize(i, 100 + (i % 7) * 40, 20 + (i % 5) * 4);
+        }
+        mWidthMeasureSpec = MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.AT_MOST);
+        mHeightMeasureSpec = MeasureSpec.makeMeasureSpec(HEIGHT,
+                "EXACTLY".equals(heightMode) ? MeasureSpec.EXACTLY : MeasureSpec.AT_MOST);
+    }
+
+    @Benchmark
+    public int measure() {
+        mEngine.measureVertical(mNodes, mWidthMeasureSpec, mHeightMeasureSpec, mMeasurer);
+        return mEngine.getMeasuredHeightAndState();
+    }
+
+    @Benchmark
+    public int measureAndLayout() {
+        mEngine.measureVertical(mNodes, mWidthMeasureSpec, mHeightMeasureSpec, mMeasurer);
+        mEngine.layoutVertical(mNodes, 0, 0, mEngine.getMeasuredWidth(),
+                mEngine.getMeasuredHeight());
+        return mNodes.getTop(childCount - 1);
+    }
+}
@@ -0,0 +1,176 @@
+package com.cry.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The map based dependency graph that SimpleDoubleRelativeLayout used before
+ * {@link com.cry.layoutengine.DependencySorter}, ported to plain Java as the
+ * baseline. {@code SparseArray} is replaced by {@link IntMap}, a copy of its
+ * binary searched parallel arrays; {@code ArrayMap} by {@link HashMap}. Nodes
+ * come from a synchronized pool capped at 100, like
+ * {@code Pools.SynchronizedPool}.
+ */
+final class MapDependencyGraph {
+    private final ArrayList<Node> mNodes = new ArrayList<>();
+    private final IntMap<Node> mKeyNodes = new IntMap<>();
+    private final ArrayDeque<Node> mRoots = new ArrayDeque<>();
+
+    void clear() {
+        for (int i = 0; i < mNodes.size(); i++) {
+            mNodes.get(i).release();
+        }
+        mNodes.clear();
+        mKeyNodes.clear();
+        mRoots.clear();
+    }
+
+    void add(int index, int id, int[] rules) {
+        final Node node = Node.acquire(index, id, rules);
+        if (id != -1) {
+            mKeyNodes.put(id, node);
+        }
+        mNodes.add(node);
+    }
+
+    void getSortedViews(int[] sorted, int[] filter) {
+        final ArrayDeque<Node> roots = findRoots(filter);
+        int index = 0;
+        Node node;
+        while ((node = roots.pollLast()) != null) {
+            sorted[index++] = node.index;
+            for (Node dependent : node.dependents.keySet()) {
+                final IntMap<Node> dependencies = dependent.dependencies;
+                dependencies.remove(node.id);
+                if (dependencies.size() == 0) {
+                    roots.add(dependent);
+                }
+            }
+        }
+        if (index < sorted.length) {
+            throw new IllegalStateException("Circular dependencies cannot exist in RelativeLayout");
+        }
+    }
+
+    private ArrayDeque<Node> findRoots(int[] filter) {
+        final int count = mNodes.size();
+        for (int i = 0; i < count; i++) {
+            final Node node = mNodes.get(i);
+            node.dependents.clear();
+            node.dependencies.clear();
+        }
+        for (int i = 0; i < count; i++) {
+            final Node node = mNodes.get(i);
+            for (int verb : filter) {
+                final int id = node.rules[verb];
+                if (id > 0) {
+                    final Node dependency = mKeyNodes.get(id);
+                    if (dependency == null || dependency == node) {
+                        continue;
+                    }
+                    dependency.dependents.put(node, this);
+                    node.dependencies.put(id, dependency);
+                }
+            }
+        }
+        mRoots.clear();
+        for (int i = 0; i < count; i++) {
+            final Node node = mNodes.get(i);
+            if (node.dependencies.size() == 0) {
+                mRoots.addLast(node);
+            }
+        }
+        return mRoots;
+    }
+
+    static final class Node {
+        private static final int POOL_LIMIT = 100;
+        private static final Node[] sPool = new Node[POOL_LIMIT];
+        private static int sPoolSize;
+
+        int index;
+        int id;
+        int[] rules;
+        final HashMap<Node, MapDependencyGraph> dependents = new HashMap<>();
+        final IntMap<Node> dependencies = new IntMap<>();
+
+        static Node acquire(int index, int id, int[] rules) {
+            Node node = null;
+            synchronized (sPool) {
+                if (sPoolSize > 0) {
+                    node = sPool[--sPoolSize];
+                    sPool[sPoolSize] = null;
+                }
+            }
+            if (node == null) {
+                node = new Node();
+            }
+            node.index = index;
+            node.id = id;
+            node.rules = rules;
+            return node;
+        }
+
+        void release() {
+            rules = null;
+            dependents.clear();
+            dependencies.clear();
+            synchronized (sPool) {
+                if (sPoolSize < POOL_LIMIT) {
+                    sPool[sPoolSize++] = this;
+                }
+            }
+        }
+    }
+
+    /** Sorted int keys with binary search, the way SparseArray stores them. */
+    static final class IntMap<E> {
+        private int[] mKeys = new int[10];
+        private Object[] mValues = new Object[10];
+        private int mSize;
+
+        int size() {
+            return mSize;
+        }
+
+        void clear() {
+            Arrays.fill(mValues, 0, mSize, null);
+            mSize = 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        E get(int key) {
+            final int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+            return i < 0 ? null : (E) mValues[i];
+        }
+
+        void put(int key, E value) {
+            int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+            if (i >= 0) {
+                mValues[i] = value;
+                return;
+            }
+            i = ~i;
+            if (mSize == mKeys.length) {
+                mKeys = Arrays.copyOf(mKeys, mSize * 2);
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+            System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+            System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+            mKeys[i] = key;
+            mValues[i] = value;
+            mSize++;
+        }
+
+        void remove(int key) {
+            final int i = Arrays.binarySearch(mKeys, 0, mSize, key);
+            if (i >= 0) {
+                System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+                System.arraycopy(mValues, i + 1, mValues, i, mSize - i - 1);
+                mValues[--mSize] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.cry.layoutengine;
+
+/**
+ * Measures one child on behalf of {@link LinearLayoutEngine}. The engine
+ * has already turned the child's layout params into specs, so an
+ * implementation only has to work out the child's own size and report it
+ * through {@link LayoutNodes#setMeasuredDimension(int, int, int)}.
+ */
+public interface ChildMeasurer {
+    void measure(LayoutNodes nodes, int index, int widthMeasureSpec, int heightMeasureSpec);
+}
@@ -0,0 +1,198 @@
+package com.cry.layoutengine;
+
+import java.util.Arrays;
+
+/**
+ * Sorts the children of a relative layout so that every child comes after
+ * the children it is anchored to, one axis at a time.
+ * <p>
+ * Children are referred to by index. Their ids go in once through
+ * {@link #setNodes(int, int[])}, then {@link #sort(int[][], int[], int[])}
+ * can be called for each axis. The anchor edges are kept in compressed
+ * sparse row form: the dependents of child {@code i} are
+ * {@code edges[offsets[i]]} up to {@code edges[offsets[i + 1]]}. Together
+ * with the in-degree array this replaces the per-node maps. All arrays only
+ * grow, so sorting the same children again does not allocate.
+ */
+public final class DependencySorter {
+    /** Same as {@code View.NO_ID}. */
+    public static final int NO_ID = -1;
+
+    private int mCount;
+
+    // Open addressing id -> index table. A slot is free when its index is -1.
+    private int[] mTableIds = new int[0];
+    private int[] mTableIndices = new int[0];
+    private int mTableMask;
+
+    private int[] mOffsets = new int[1];
+    private int[] mCursors = new int[0];
+    private int[] mEdges = new int[0];
+    private int[] mInDegrees = new int[0];
+    private int[] mStack = new int[0];
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Registers the children to sort. Ids that are 0 or {@link #NO_ID}
+     * cannot be anchored to. If two children share an id, anchors resolve
+     * to the later one.
+     *
+     * @param ids the id of each child, by index; only read during this call
+     */
+    public void setNodes(int count, int[] ids) {
+        mCount = count;
+        ensureCapacity(count);
+
+        final int[] tableIds = mTableIds;
+        final int[] tableIndices = mTableIndices;
+        final int mask = mTableMask;
+        Arrays.fill(tableIndices, -1);
+        for (int i = 0; i < count; i++) {
+            final int id = ids[i];
+            if (id == 0 || id == NO_ID) {
+                continue;
+            }
+            int slot = hash(id) & mask;
+            while (tableIndices[slot] >= 0 && tableIds[slot] != id) {
+                slot = (slot + 1) & mask;
+            }
+            tableIds[slot] = id;
+            tableIndices[slot] = i;
+        }
+    }
+
+    /**
+     * @return the index of the child with the given id, or -1
+     */
+    public int indexOfId(int id) {
+        final int[] tableIds = mTableIds;
+        final int[] tableIndices = mTableIndices;
+        final int mask = mTableMask;
+        if (tableIndices.length == 0) {
+            return -1;
+        }
+        int slot = hash(id) & mask;
+        int index;
+        while ((index = tableIndices[slot]) >= 0) {
+            if (tableIds[slot] == id) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Sorts the children along one axis.
+     *
+     * @param rules  the rules of each child, by index, holding anchor ids;
+     *               null for a child without rules
+     * @param filter the rules that count on this axis
+     * @param sorted receives the child indices, anchors first
+     * @throws IllegalStateException if the anchors form a cycle
+     */
+    public void sort(int[][] rules, int[] filter, int[] sorted) {
+        final int count = mCount;
+        final int[] offsets = mOffsets;
+        final int[] inDegrees = mInDegrees;
+        Arrays.fill(offsets, 0, count + 1, 0);
+        Arrays.fill(inDegrees, 0, count, 0);
+
+        // First pass: count the dependents of every anchor.
+        int edgeCount = 0;
+        for (int i = 0; i < count; i++) {
+            final int[] childRules = rules[i];
+            if (childRules == null) {
+                continue;
+            }
+            for (int verb : filter) {
+                final int anchor = anchorOf(childRules[verb], i);
+                if (anchor >= 0) {
+                    offsets[anchor + 1]++;
+                    inDegrees[i]++;
+                    edgeCount++;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        if (mEdges.length < edgeCount) {
+            mEdges = new int[Math.max(edgeCount, mEdges.length * 2)];
+        }
+
+        // Second pass: write each dependent into its anchor's row.
+        final int[] edges = mEdges;
+        final int[] cursors = mCursors;
+        System.arraycopy(offsets, 0, cursors, 0, count);
+        for (int i = 0; i < count; i++) {
+            final int[] childRules = rules[i];
+            if (childRules == null) {
+                continue;
+            }
+            for (int verb : filter) {
+                final int anchor = anchorOf(childRules[verb], i);
+                if (anchor >= 0) {
+                    edges[cursors[anchor]++] = i;
+                }
+            }
+        }
+
+        // Kahn's algorithm, taking the most recently freed child first.
+        final int[] stack = mStack;
+        int top = 0;
+        for (int i = 0; i < count; i++) {
+            if (inDegrees[i] == 0) {
+                stack[top++] = i;
+            }
+        }
+        int index = 0;
+        while (top > 0) {
+            final int node = stack[--top];
+            sorted[index++] = node;
+            for (int e = offsets[node], end = offsets[node + 1]; e < end; e++) {
+                final int dependent = edges[e];
+                if (--inDegrees[dependent] == 0) {
+                    stack[top++] = dependent;
+                }
+            }
+        }
+
+        if (index < count) {
+            throw new IllegalStateException("Circular dependencies cannot exist in RelativeLayout");
+        }
+    }
+
+    private int anchorOf(int id, int child) {
+        if (id <= 0) {
+            return -1;
+        }
+        final int anchor = indexOfId(id);
+        return anchor == child ? -1 : anchor;
+    }
+
+    private static int hash(int id) {
+        final int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mInDegrees.length < count) {
+            final int size = Math.max(count, mInDegrees.length * 2);
+            mOffsets = new int[size + 1];
+            mCursors = new int[size];
+            mInDegrees = new int[size];
+            mStack = new int[size];
+        }
+        // Keep the table at most half full.
+        if (mTableIds.length < count * 2) {
+            final int size = Integer.highestOneBit(Math.max(8, count * 2 - 1)) << 1;
+            mTableIds = new int[size];
+            mTableIndices = new int[size];
+            mTableMask = size - 1;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.cry.layoutengine;
+
+/**
+ * A {@link ChildMeasurer} for leaves that always want the same size, such as
+ * images or single-line text whose size was worked out ahead of time. Each
+ * leaf resolves its desired size against the spec the way
+ * {@code View.resolveSizeAndState} does.
+ */
+public final class DesiredSizeMeasurer implements ChildMeasurer {
+    private int[] mDesiredWidths = new int[0];
+    private int[] mDesiredHeights = new int[0];
+
+    public void setDesiredSize(int index, int width, int height) {
+        if (index >= mDesiredWidths.length) {
+            final int capacity = Math.max(index + 1, mDesiredWidths.length * 2);
+            mDesiredWidths = LayoutNodes.grow(mDesiredWidths, capacity);
+            mDesiredHeights = LayoutNodes.grow(mDesiredHeights, capacity);
+        }
+        mDesiredWidths[index] = width;
+        mDesiredHeights[index] = height;
+    }
+
+    @Override
+    public void measure(LayoutNodes nodes, int index, int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = index < mDesiredWidths.length ? mDesiredWidths[index] : 0;
+        final int height = index < mDesiredHeights.length ? mDesiredHeights[index] : 0;
+        nodes.setMeasuredDimension(index,
+                MeasureSpec.resolveSizeAndState(width, widthMeasureSpec, 0),
+                MeasureSpec.resolveSizeAndState(height, heightMeasureSpec, 0));
+    }
+}
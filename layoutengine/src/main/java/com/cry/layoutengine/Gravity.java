@@ -0,0 +1,23 @@
+package com.cry.layoutengine;
+
+/**
+ * The absolute gravity constants of {@code android.view.Gravity} that a
+ * vertical linear layout looks at. Relative values such as {@code START} must
+ * be resolved to {@link #LEFT} or {@link #RIGHT} before they get here.
+ */
+public final class Gravity {
+    public static final int NO_GRAVITY = 0x0000;
+
+    public static final int CENTER_HORIZONTAL = 0x01;
+    public static final int LEFT = 0x03;
+    public static final int RIGHT = 0x05;
+    public static final int HORIZONTAL_GRAVITY_MASK = 0x07;
+
+    public static final int CENTER_VERTICAL = 0x10;
+    public static final int TOP = 0x30;
+    public static final int BOTTOM = 0x50;
+    public static final int VERTICAL_GRAVITY_MASK = 0x70;
+
+    private Gravity() {
+    }
+}
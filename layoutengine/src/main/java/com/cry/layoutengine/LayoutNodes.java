@@ -0,0 +1,159 @@
+package com.cry.layoutengine;
+
+import java.util.Arrays;
+
+/**
+ * The children of one vertical linear layout, kept as parallel primitive
+ * arrays indexed by child position. The layout params go in through
+ * {@link #add}, the engine writes measured sizes and frames back into the
+ * same slots. The arrays only grow, so a set of nodes that is
+ * {@link #clear() cleared} and refilled every pass does not allocate.
+ */
+public final class LayoutNodes {
+    /** Same as {@code View.VISIBLE}. */
+    public static final int VISIBLE = 0x00000000;
+    /** Same as {@code View.INVISIBLE}. */
+    public static final int INVISIBLE = 0x00000004;
+    /** Same as {@code View.GONE}. */
+    public static final int GONE = 0x00000008;
+
+    private int mCount;
+
+    // Inputs, the equivalent of LinearLayout.LayoutParams plus visibility.
+    int[] mWidths = new int[0];
+    int[] mHeights = new int[0];
+    float[] mWeights = new float[0];
+    int[] mGravities = new int[0];
+    int[] mLeftMargins = new int[0];
+    int[] mTopMargins = new int[0];
+    int[] mRightMargins = new int[0];
+    int[] mBottomMargins = new int[0];
+    int[] mVisibilities = new int[0];
+
+    // Outputs. Measured sizes keep their state bits, like View does.
+    int[] mMeasuredWidths = new int[0];
+    int[] mMeasuredHeights = new int[0];
+    int[] mLefts = new int[0];
+    int[] mTops = new int[0];
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public void clear() {
+        mCount = 0;
+    }
+
+    /**
+     * Appends a child.
+     *
+     * @param width      a size in pixels, {@link MeasureSpec#MATCH_PARENT} or
+     *                   {@link MeasureSpec#WRAP_CONTENT}
+     * @param height     same as width
+     * @param weight     share of the excess height, 0 for none
+     * @param gravity    absolute horizontal gravity, or -1 to use the
+     *                   layout's own
+     * @param visibility one of {@link #VISIBLE}, {@link #INVISIBLE} or
+     *                   {@link #GONE}
+     * @return the index of the new child
+     */
+    public int add(int width, int height, float weight, int gravity,
+                   int leftMargin, int topMargin, int rightMargin, int bottomMargin,
+                   int visibility) {
+        final int index = mCount;
+        ensureCapacity(index + 1);
+        mWidths[index] = width;
+        mHeights[index] = height;
+        mWeights[index] = weight;
+        mGravities[index] = gravity;
+        mLeftMargins[index] = leftMargin;
+        mTopMargins[index] = topMargin;
+        mRightMargins[index] = rightMargin;
+        mBottomMargins[index] = bottomMargin;
+        mVisibilities[index] = visibility;
+        mMeasuredWidths[index] = 0;
+        mMeasuredHeights[index] = 0;
+        mLefts[index] = 0;
+        mTops[index] = 0;
+        mCount = index + 1;
+        return index;
+    }
+
+    /**
+     * Appends a visible child with no weight, margins or gravity of its own.
+     */
+    public int add(int width, int height) {
+        return add(width, height, 0, -1, 0, 0, 0, 0, VISIBLE);
+    }
+
+    /**
+     * Called by a {@link ChildMeasurer} to report the size of a child. Can
+     * also be used to seed the size a child kept from an earlier pass, which
+     * is what a framework view would still be holding.
+     */
+    public void setMeasuredDimension(int index, int measuredWidthAndState,
+                                     int measuredHeightAndState) {
+        mMeasuredWidths[index] = measuredWidthAndState;
+        mMeasuredHeights[index] = measuredHeightAndState;
+    }
+
+    public int getVisibility(int index) {
+        return mVisibilities[index];
+    }
+
+    public int getMeasuredWidthAndState(int index) {
+        return mMeasuredWidths[index];
+    }
+
+    public int getMeasuredHeightAndState(int index) {
+        return mMeasuredHeights[index];
+    }
+
+    public int getMeasuredWidth(int index) {
+        return mMeasuredWidths[index] & MeasureSpec.MEASURED_SIZE_MASK;
+    }
+
+    public int getMeasuredHeight(int index) {
+        return mMeasuredHeights[index] & MeasureSpec.MEASURED_SIZE_MASK;
+    }
+
+    public int getLeft(int index) {
+        return mLefts[index];
+    }
+
+    public int getTop(int index) {
+        return mTops[index];
+    }
+
+    public int getRight(int index) {
+        return mLefts[index] + getMeasuredWidth(index);
+    }
+
+    public int getBottom(int index) {
+        return mTops[index] + getMeasuredHeight(index);
+    }
+
+    private void ensureCapacity(int count) {
+        if (mWidths.length >= count) {
+            return;
+        }
+        final int capacity = Math.max(count, mWidths.length * 2);
+        mWidths = grow(mWidths, capacity);
+        mHeights = grow(mHeights, capacity);
+        mWeights = Arrays.copyOf(mWeights, capacity);
+        mGravities = grow(mGravities, capacity);
+        mLeftMargins = grow(mLeftMargins, capacity);
+        mTopMargins = grow(mTopMargins, capacity);
+        mRightMargins = grow(mRightMargins, capacity);
+        mBottomMargins = grow(mBottomMargins, capacity);
+        mVisibilities = grow(mVisibilities, capacity);
+        mMeasuredWidths = grow(mMeasuredWidths, capacity);
+        mMeasuredHeights = grow(mMeasuredHeights, capacity);
+        mLefts = grow(mLefts, capacity);
+        mTops = grow(mTops, capacity);
+    }
+
+    static int[] grow(int[] array, int capacity) {
+        return Arrays.copyOf(array, capacity);
+    }
+}
@@ -0,0 +1,200 @@
+package com.cry.layoutengine;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records nested timing spans of layout passes into a fixed ring buffer of
+ * longs, and writes them out as Chrome trace JSON, which chrome://tracing
+ * and the Perfetto UI both open.
+ * <p>
+ * Span names are registered once, usually in a static initializer, and
+ * referred to by id afterwards:
+ * <pre>
+ * private static final int TRACE_MEASURE = LayoutTracer.register("MyLayout.onMeasure");
+ *
+ * LayoutTracer.begin(TRACE_MEASURE);
+ * try {
+ *     ...
+ * } finally {
+ *     LayoutTracer.end(TRACE_MEASURE);
+ * }
+ * </pre>
+ * Recording is off by default; {@link #begin(int)} and {@link #end(int)} then
+ * only read a volatile flag. When on, an event is two longs written into a
+ * slot claimed with a single atomic increment, so no lock is taken and
+ * nothing is allocated. Once the buffer is full the oldest events are
+ * overwritten. A dump taken while other threads are still recording may
+ * contain a few half written events at the oldest end.
+ */
+public final class LayoutTracer {
+    /** Default capacity, in events. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAX_NAMES = 1 << 15;
+    private static final long PHASE_END = 1;
+
+    private static volatile boolean sEnabled;
+
+    private static final Object sNamesLock = new Object();
+    private static String[] sNames = new String[64];
+    private static int sNameCount;
+
+    private static final AtomicLong sCursor = new AtomicLong();
+    // Two longs per event: the timestamp, then thread id << 32 | name << 1 | phase.
+    private static volatile long[] sEvents = new long[DEFAULT_CAPACITY * 2];
+
+    private LayoutTracer() {
+    }
+
+    /**
+     * @return the id to pass to {@link #begin(int)} and {@link #end(int)}
+     */
+    public static int register(String name) {
+        synchronized (sNamesLock) {
+            for (int i = 0; i < sNameCount; i++) {
+                if (sNames[i].equals(name)) {
+                    return i;
+                }
+            }
+            if (sNameCount == MAX_NAMES) {
+                throw new IllegalStateException("Too many trace names");
+            }
+            if (sNameCount == sNames.length) {
+                final String[] names = new String[sNames.length * 2];
+                System.arraycopy(sNames, 0, names, 0, sNameCount);
+                sNames = names;
+            }
+            sNames[sNameCount] = name;
+            return sNameCount++;
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Drops all recorded events and resizes the buffer. Should not be
+     * called while another thread is recording.
+     *
+     * @param capacity number of events kept, rounded up to a power of two
+     */
+    public static void reset(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        sEvents = new long[size * 2];
+        sCursor.set(0);
+    }
+
+    public static void clear() {
+        sCursor.set(0);
+    }
+
+    public static void begin(int nameId) {
+        if (sEnabled) {
+            record(nameId, 0);
+        }
+    }
+
+    public static void end(int nameId) {
+        if (sEnabled) {
+            record(nameId, PHASE_END);
+        }
+    }
+
+    private static void record(int nameId, long phase) {
+        final long now = System.nanoTime();
+        final long[] events = sEvents;
+        final int mask = (events.length >> 1) - 1;
+        final int slot = ((int) sCursor.getAndIncrement() & mask) << 1;
+        events[slot] = now;
+        events[slot + 1] = (Thread.currentThread().getId() << 32) | ((long) nameId << 1) | phase;
+    }
+
+    /**
+     * @return how many events are in the buffer
+     */
+    public static int getEventCount() {
+        return (int) Math.min(sCursor.get(), sEvents.length >> 1);
+    }
+
+    /**
+     * Writes the buffer to <code>file</code> as Chrome trace JSON.
+     */
+    public static void dumpChromeTrace(File file) throws IOException {
+        final Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writeChromeTrace(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the buffer as Chrome trace JSON, oldest event first. Timestamps
+     * are in microseconds from an arbitrary origin, as the format expects.
+     */
+    public static void writeChromeTrace(Writer writer) throws IOException {
+        final long[] events = sEvents;
+        final int capacity = events.length >> 1;
+        final long cursor = sCursor.get();
+        final long first = Math.max(0, cursor - capacity);
+
+        final String[] names;
+        synchronized (sNamesLock) {
+            names = sNames;
+        }
+
+        writer.write("{\"traceEvents\":[");
+        boolean separator = false;
+        for (long i = first; i < cursor; i++) {
+            final int slot = ((int) i & (capacity - 1)) << 1;
+            final long time = events[slot];
+            final long packed = events[slot + 1];
+            final int nameId = (int) ((packed >> 1) & (MAX_NAMES - 1));
+            final String name = nameId < names.length ? names[nameId] : null;
+            if (name == null) {
+                continue;
+            }
+            if (separator) {
+                writer.write(',');
+            }
+            separator = true;
+            writer.write("\n{\"name\":\"");
+            writeEscaped(writer, name);
+            writer.write("\",\"cat\":\"layout\",\"ph\":\"");
+            writer.write((packed & PHASE_END) != 0 ? 'E' : 'B');
+            writer.write("\",\"ts\":");
+            writer.write(Double.toString(time / 1000.0));
+            writer.write(",\"pid\":0,\"tid\":");
+            writer.write(Long.toString(packed >>> 32));
+            writer.write('}');
+        }
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        writer.flush();
+    }
+
+    private static void writeEscaped(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.cry.layoutengine;
+
+/**
+ * The measure and layout maths of a vertical {@code LinearLayout}, with no
+ * Android dependencies. It follows {@code LinearLayout.measureVertical} and
+ * {@code layoutVertical} of this project step for step: margins, weights
+ * (the last weighted child takes the rounding remainder), the uniform width
+ * pass for children matching our width, gravity and
+ * {@code resolveSizeAndState}.
+ * <p>
+ * Dividers, baseline alignment and {@code measureWithLargestChild} are not
+ * supported. Gravity must already be absolute, see {@link Gravity}.
+ * <p>
+ * An engine holds the state of one layout, the same way the view does, and
+ * can be reused for any number of passes.
+ */
+public final class LinearLayoutEngine {
+    private int mPaddingLeft;
+    private int mPaddingTop;
+    private int mPaddingRight;
+    private int mPaddingBottom;
+    private int mGravity = Gravity.LEFT | Gravity.TOP;
+    private int mMinimumWidth;
+    private int mMinimumHeight;
+
+    private int mTotalLength;
+    private int mMeasuredWidth;
+    private int mMeasuredHeight;
+
+    public void setPadding(int left, int top, int right, int bottom) {
+        mPaddingLeft = left;
+        mPaddingTop = top;
+        mPaddingRight = right;
+        mPaddingBottom = bottom;
+    }
+
+    /**
+     * @param gravity absolute gravity used to place the children as a block
+     *                vertically, and each child horizontally unless it has
+     *                a gravity of its own
+     */
+    public void setGravity(int gravity) {
+        if ((gravity & Gravity.HORIZONTAL_GRAVITY_MASK) == 0) {
+            gravity |= Gravity.LEFT;
+        }
+        if ((gravity & Gravity.VERTICAL_GRAVITY_MASK) == 0) {
+            gravity |= Gravity.TOP;
+        }
+        mGravity = gravity;
+    }
+
+    public int getGravity() {
+        return mGravity;
+    }
+
+    /**
+     * Same as the suggested minimum size of a view, that is the larger of
+     * its minimum size and the one of its background.
+     */
+    public void setMinimumSize(int width, int height) {
+        mMinimumWidth = width;
+        mMinimumHeight = height;
+    }
+
+    public int getMeasuredWidthAndState() {
+        return mMeasuredWidth;
+    }
+
+    public int getMeasuredHeightAndState() {
+        return mMeasuredHeight;
+    }
+
+    public int getMeasuredWidth() {
+        return mMeasuredWidth & MeasureSpec.MEASURED_SIZE_MASK;
+    }
+
+    public int getMeasuredHeight() {
+        return mMeasuredHeight & MeasureSpec.MEASURED_SIZE_MASK;
+    }
+
+    /**
+     * @return the height of the children stacked up, margins and padding
+     * included, as of the last measure
+     */
+    public int getTotalLength() {
+        return mTotalLength;
+    }
+
+    /**
+     * Measures the children of a vertical layout and then the layout itself.
+     *
+     * @param nodes    the children; their measured sizes are filled in
+     * @param measurer measures a single child once the engine has worked
+     *                 out its specs
+     */
+    public void measureVertical(LayoutNodes nodes, int widthMeasureSpec, int heightMeasureSpec,
+                                ChildMeasurer measurer) {
+        mTotalLength = 0;
+        int maxWidth = 0;
+        int childState = 0;
+        int alternativeMaxWidth = 0;
+        int weightedMaxWidth = 0;
+        boolean allFillParent = true;
+        float totalWeight = 0;
+
+        final int count = nodes.getCount();
+
+        final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+        final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+
+        final int[] widths = nodes.mWidths;
+        final int[] heights = nodes.mHeights;
+        final float[] weights = nodes.mWeights;
+        final int[] leftMargins = nodes.mLeftMargins;
+        final int[] topMargins = nodes.mTopMargins;
+        final int[] rightMargins = nodes.mRightMargins;
+        final int[] bottomMargins = nodes.mBottomMargins;
+        final int[] visibilities = nodes.mVisibilities;
+
+        boolean matchWidth = false;
+        boolean skippedMeasure = false;
+
+        int consumedExcessSpace = 0;
+
+        // See how tall everyone is. Also remember max width.
+        for (int i = 0; i < count; ++i) {
+            if (visibilities[i] == LayoutNodes.GONE) {
+                continue;
+            }
+
+            totalWeight += weights[i];
+
+            final boolean useExcessSpace = heights[i] == 0 && weights[i] > 0;
+            if (heightMode == MeasureSpec.EXACTLY && useExcessSpace) {
+                // Optimization: don't bother measuring children who are only
+                // laid out using excess space. These views will get measured
+                // later if we have space to distribute.
+                final int totalLength = mTotalLength;
+                mTotalLength = Math.max(totalLength, totalLength + topMargins[i] + bottomMargins[i]);
+                skippedMeasure = true;
+            } else {
+                // The heightMode is either UNSPECIFIED or AT_MOST when an
+                // excess-only child gets here. Measure it using WRAP_CONTENT
+                // so that we can find out its optimal height.
+                final int height = useExcessSpace ? MeasureSpec.WRAP_CONTENT : heights[i];
+
+                // Determine how big this child would like to be. If this or
+                // previous children have given a weight, then we allow it to
+                // use all available space (and we will shrink things later
+                // if needed).
+                final int usedHeight = totalWeight == 0 ? mTotalLength : 0;
+                final int childWidthMeasureSpec = MeasureSpec.getChildMeasureSpec(widthMeasureSpec,
+                        mPaddingLeft + mPaddingRight + leftMargins[i] + rightMargins[i], widths[i]);
+                final int childHeightMeasureSpec = MeasureSpec.getChildMeasureSpec(heightMeasureSpec,
+                        mPaddingTop + mPaddingBottom + topMargins[i] + bottomMargins[i] + usedHeight,
+                        height);
+                measurer.measure(nodes, i, childWidthMeasureSpec, childHeightMeasureSpec);
+
+                final int childHeight = nodes.getMeasuredHeight(i);
+                if (useExcessSpace) {
+                    // Record how much space we've allocated to excess-only
+                    // children so that we can match the behavior of EXACTLY
+                    // measurement.
+                    consumedExcessSpace += childHeight;
+                }
+
+                final int totalLength = mTotalLength;
+                mTotalLength = Math.max(totalLength,
+                        totalLength + childHeight + topMargins[i] + bottomMargins[i]);
+            }
+
+            boolean matchWidthLocally = false;
+            if (widthMode != MeasureSpec.EXACTLY && widths[i] == MeasureSpec.MATCH_PARENT) {
+                // The width of the linear layout will scale, and at least one
+                // child said it wanted to match our width. Set a flag
+                // indicating that we need to remeasure at least that view when
+                // we know our width.
+                matchWidth = true;
+                matchWidthLocally = true;
+            }
+
+            final int margin = leftMargins[i] + rightMargins[i];
+            final int measuredWidth = nodes.getMeasuredWidth(i) + margin;
+            maxWidth = Math.max(maxWidth, measuredWidth);
+            childState = childState | MeasureSpec.getMeasuredState(
+                    nodes.mMeasuredWidths[i], nodes.mMeasuredHeights[i]);
+
+            allFillParent = allFillParent && widths[i] == MeasureSpec.MATCH_PARENT;
+            if (weights[i] > 0) {
+                /*
+                 * Widths of weighted Views are bogus if we end up
+                 * remeasuring, so keep them separate.
+                 */
+                weightedMaxWidth = Math.max(weightedMaxWidth,
+                        matchWidthLocally ? margin : measuredWidth);
+            } else {
+                alternativeMaxWidth = Math.max(alternativeMaxWidth,
+                        matchWidthLocally ? margin : measuredWidth);
+            }
+        }
+
+        // Add in our padding
+        mTotalLength += mPaddingTop + mPaddingBottom;
+
+        int heightSize = mTotalLength;
+
+        // Check against our minimum height
+        heightSize = Math.max(heightSize, mMinimumHeight);
+
+        // Reconcile our calculated size with the heightMeasureSpec
+        int heightSizeAndState = MeasureSpec.resolveSizeAndState(heightSize, heightMeasureSpec, 0);
+        heightSize = heightSizeAndState & MeasureSpec.MEASURED_SIZE_MASK;
+
+        // Either expand children with weight to take up available space or
+        // shrink them if they extend beyond our current bounds. If we skipped
+        // measurement on any children, we need to measure them now.
+        int remainingExcess = heightSize - mTotalLength + consumedExcessSpace;
+        if (skippedMeasure || remainingExcess != 0 && totalWeight > 0.0f) {
+            float remainingWeightSum = totalWeight;
+
+            // The last weighted child gets whatever is left, so the rounding
+            // remainder always lands on the same node. Dividing by the float
+            // remainder of the weight sum could leave it a pixel short.
+            int lastWeighted = -1;
+            for (int i = count - 1; i >= 0; --i) {
+                if (visibilities[i] != LayoutNodes.GONE && weights[i] > 0) {
+                    lastWeighted = i;
+                    break;
+                }
+            }
+
+            mTotalLength = 0;
+
+            for (int i = 0; i < count; ++i) {
+                if (visibilities[i] == LayoutNodes.GONE) {
+                    continue;
+                }
+
+                final float childWeight = weights[i];
+                if (childWeight > 0) {
+                    final int share = i == lastWeighted ? remainingExcess
+                            : (int) (childWeight * remainingExcess / remainingWeightSum);
+                    remainingExcess -= share;
+                    remainingWeightSum -= childWeight;
+
+                    final int childHeight;
+                    if (heights[i] == 0) {
+                        childHeight = share;
+                    } else {
+                        childHeight = nodes.getMeasuredHeight(i) + share;
+                    }
+
+                    // Children skipped in the first pass have never been
+                    // measured. Everyone else only needs another measure if
+                    // the distribution actually changed their height.
+                    final boolean measuredBefore = !(heightMode == MeasureSpec.EXACTLY && heights[i] == 0);
+                    if (!measuredBefore || nodes.getMeasuredHeight(i) != childHeight) {
+                        final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(
+                                Math.max(0, childHeight), MeasureSpec.EXACTLY);
+                        final int childWidthMeasureSpec = MeasureSpec.getChildMeasureSpec(
+                                widthMeasureSpec,
+                                mPaddingLeft + mPaddingRight + leftMargins[i] + rightMargins[i],
+                                widths[i]);
+                        measurer.measure(nodes, i, childWidthMeasureSpec, childHeightMeasureSpec);
+
+                        // Child may now not fit in vertical dimension.
+                        childState = childState | (MeasureSpec.getMeasuredState(
+                                nodes.mMeasuredWidths[i], nodes.mMeasuredHeights[i])
+                                & (MeasureSpec.MEASURED_STATE_MASK
+                                >> MeasureSpec.MEASURED_HEIGHT_STATE_SHIFT));
+                    }
+                }
+
+                final int margin = leftMargins[i] + rightMargins[i];
+                final int measuredWidth = nodes.getMeasuredWidth(i) + margin;
+                maxWidth = Math.max(maxWidth, measuredWidth);
+
+                boolean matchWidthLocally = widthMode != MeasureSpec.EXACTLY
+                        && widths[i] == MeasureSpec.MATCH_PARENT;
+
+                alternativeMaxWidth = Math.max(alternativeMaxWidth,
+                        matchWidthLocally ? margin : measuredWidth);
+
+                allFillParent = allFillParent && widths[i] == MeasureSpec.MATCH_PARENT;
+
+                final int totalLength = mTotalLength;
+                mTotalLength = Math.max(totalLength, totalLength + nodes.getMeasuredHeight(i)
+                        + topMargins[i] + bottomMargins[i]);
+            }
+
+            // Add in our padding
+            mTotalLength += mPaddingTop + mPaddingBottom;
+        } else {
+            alternativeMaxWidth = Math.max(alternativeMaxWidth, weightedMaxWidth);
+        }
+
+        if (!allFillParent && widthMode != MeasureSpec.EXACTLY) {
+            maxWidth = alternativeMaxWidth;
+        }
+
+        maxWidth += mPaddingLeft + mPaddingRight;
+
+        // Check against our minimum width
+        maxWidth = Math.max(maxWidth, mMinimumWidth);
+
+        mMeasuredWidth = MeasureSpec.resolveSizeAndState(maxWidth, widthMeasureSpec, childState);
+        mMeasuredHeight = heightSizeAndState;
+
+        if (matchWidth) {
+            forceUniformWidth(nodes, measurer);
+        }
+    }
+
+    private void forceUniformWidth(LayoutNodes nodes, ChildMeasurer measurer) {
+        // Pretend that the linear layout has an exact size.
+        final int uniformMeasureSpec = MeasureSpec.makeMeasureSpec(getMeasuredWidth(),
+                MeasureSpec.EXACTLY);
+        final int count = nodes.getCount();
+        for (int i = 0; i < count; ++i) {
+            if (nodes.mVisibilities[i] == LayoutNodes.GONE
+                    || nodes.mWidths[i] != MeasureSpec.MATCH_PARENT) {
+                continue;
+            }
+
+            final int childWidthMeasureSpec = MeasureSpec.getChildMeasureSpec(uniformMeasureSpec,
+                    mPaddingLeft + mPaddingRight + nodes.mLeftMargins[i] + nodes.mRightMargins[i],
+                    MeasureSpec.MATCH_PARENT);
+            if (nodes.getMeasuredWidth(i) == MeasureSpec.getSize(childWidthMeasureSpec)) {
+                // Already as wide as it is going to be.
+                continue;
+            }
+
+            // Reuse the old measured height.
+            final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(
+                    nodes.getMeasuredHeight(i), MeasureSpec.EXACTLY);
+            measurer.measure(nodes, i, childWidthMeasureSpec, childHeightMeasureSpec);
+        }
+    }
+
+    /**
+     * Places the children measured by the last
+     * {@link #measureVertical(LayoutNodes, int, int, ChildMeasurer)}. Frames
+     * are relative to the layout, like the ones a view gives its children.
+     */
+    public void layoutVertical(LayoutNodes nodes, int left, int top, int right, int bottom) {
+        final int paddingLeft = mPaddingLeft;
+
+        int childTop;
+        int childLeft;
+
+        // Where right end of child should go
+        final int width = right - left;
+        int childRight = width - mPaddingRight;
+
+        // Space available for child
+        int childSpace = width - paddingLeft - mPaddingRight;
+
+        final int count = nodes.getCount();
+        final int[] gravities = nodes.mGravities;
+        final int[] leftMargins = nodes.mLeftMargins;
+        final int[] topMargins = nodes.mTopMargins;
+        final int[] rightMargins = nodes.mRightMargins;
+        final int[] bottomMargins = nodes.mBottomMargins;
+
+        final int majorGravity = mGravity & Gravity.VERTICAL_GRAVITY_MASK;
+        final int minorGravity = mGravity & Gravity.HORIZONTAL_GRAVITY_MASK;
+
+        switch (majorGravity) {
+            case Gravity.BOTTOM:
+                // mTotalLength contains the padding already
+                childTop = mPaddingTop + bottom - top - mTotalLength;
+                break;
+
+            // mTotalLength contains the padding already
+            case Gravity.CENTER_VERTICAL:
+                childTop = mPaddingTop + (bottom - top - mTotalLength) / 2;
+                break;
+
+            case Gravity.TOP:
+            default:
+                childTop = mPaddingTop;
+                break;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (nodes.mVisibilities[i] == LayoutNodes.GONE) {
+                continue;
+            }
+
+            final int childWidth = nodes.getMeasuredWidth(i);
+            final int childHeight = nodes.getMeasuredHeight(i);
+
+            final int gravity = gravities[i] < 0 ? minorGravity : gravities[i];
+            switch (gravity & Gravity.HORIZONTAL_GRAVITY_MASK) {
+                case Gravity.CENTER_HORIZONTAL:
+                    childLeft = paddingLeft + ((childSpace - childWidth) / 2)
+                            + leftMargins[i] - rightMargins[i];
+                    break;
+
+                case Gravity.RIGHT:
+                    childLeft = childRight - childWidth - rightMargins[i];
+                    break;
+
+                case Gravity.LEFT:
+                default:
+                    childLeft = paddingLeft + leftMargins[i];
+                    break;
+            }
+
+            childTop += topMargins[i];
+            nodes.mLefts[i] = childLeft;
+            nodes.mTops[i] = childTop;
+            childTop += childHeight + bottomMargins[i];
+        }
+    }
+}
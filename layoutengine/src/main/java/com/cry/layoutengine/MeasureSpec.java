@@ -0,0 +1,149 @@
+package com.cry.layoutengine;
+
+/**
+ * The measure spec encoding of {@code android.view.View.MeasureSpec}, plus the
+ * size resolution helpers of {@code View} and {@code ViewGroup} that work on
+ * it. The values are bit for bit the same as the framework's, so specs and
+ * measured sizes can be passed across without conversion.
+ */
+public final class MeasureSpec {
+    private static final int MODE_SHIFT = 30;
+    private static final int MODE_MASK = 0x3 << MODE_SHIFT;
+
+    public static final int UNSPECIFIED = 0;
+    public static final int EXACTLY = 1 << MODE_SHIFT;
+    public static final int AT_MOST = 2 << MODE_SHIFT;
+
+    /** Same as {@code View.MEASURED_SIZE_MASK}. */
+    public static final int MEASURED_SIZE_MASK = 0x00ffffff;
+    /** Same as {@code View.MEASURED_STATE_MASK}. */
+    public static final int MEASURED_STATE_MASK = 0xff000000;
+    /** Same as {@code View.MEASURED_HEIGHT_STATE_SHIFT}. */
+    public static final int MEASURED_HEIGHT_STATE_SHIFT = 16;
+    /** Same as {@code View.MEASURED_STATE_TOO_SMALL}. */
+    public static final int MEASURED_STATE_TOO_SMALL = 0x01000000;
+
+    /** Same as {@code ViewGroup.LayoutParams.MATCH_PARENT}. */
+    public static final int MATCH_PARENT = -1;
+    /** Same as {@code ViewGroup.LayoutParams.WRAP_CONTENT}. */
+    public static final int WRAP_CONTENT = -2;
+
+    private MeasureSpec() {
+    }
+
+    public static int makeMeasureSpec(int size, int mode) {
+        return (size & ~MODE_MASK) | (mode & MODE_MASK);
+    }
+
+    public static int getMode(int measureSpec) {
+        return measureSpec & MODE_MASK;
+    }
+
+    public static int getSize(int measureSpec) {
+        return measureSpec & ~MODE_MASK;
+    }
+
+    /**
+     * Same as {@code View.resolveSizeAndState}.
+     */
+    public static int resolveSizeAndState(int size, int measureSpec, int childMeasuredState) {
+        final int specMode = getMode(measureSpec);
+        final int specSize = getSize(measureSpec);
+        final int result;
+        switch (specMode) {
+            case AT_MOST:
+                if (specSize < size) {
+                    result = specSize | MEASURED_STATE_TOO_SMALL;
+                } else {
+                    result = size;
+                }
+                break;
+            case EXACTLY:
+                result = specSize;
+                break;
+            case UNSPECIFIED:
+            default:
+                result = size;
+        }
+        return result | (childMeasuredState & MEASURED_STATE_MASK);
+    }
+
+    /**
+     * Same as {@code View.getMeasuredState}, from a measured width and height
+     * that still carry their state bits.
+     */
+    public static int getMeasuredState(int measuredWidthAndState, int measuredHeightAndState) {
+        return (measuredWidthAndState & MEASURED_STATE_MASK)
+                | ((measuredHeightAndState >> MEASURED_HEIGHT_STATE_SHIFT)
+                & (MEASURED_STATE_MASK >> MEASURED_HEIGHT_STATE_SHIFT));
+    }
+
+    /**
+     * Same as {@code ViewGroup.getChildMeasureSpec} for apps targeting API 23
+     * or later, where an UNSPECIFIED parent hands its children a size of 0.
+     */
+    public static int getChildMeasureSpec(int spec, int padding, int childDimension) {
+        final int specMode = getMode(spec);
+        final int specSize = getSize(spec);
+
+        final int size = Math.max(0, specSize - padding);
+
+        int resultSize = 0;
+        int resultMode = 0;
+
+        switch (specMode) {
+            // Parent has imposed an exact size on us
+            case EXACTLY:
+                if (childDimension >= 0) {
+                    resultSize = childDimension;
+                    resultMode = EXACTLY;
+                } else if (childDimension == MATCH_PARENT) {
+                    // Child wants to be our size. So be it.
+                    resultSize = size;
+                    resultMode = EXACTLY;
+                } else if (childDimension == WRAP_CONTENT) {
+                    // Child wants to determine its own size. It can't be
+                    // bigger than us.
+                    resultSize = size;
+                    resultMode = AT_MOST;
+                }
+                break;
+
+            // Parent has imposed a maximum size on us
+            case AT_MOST:
+                if (childDimension >= 0) {
+                    // Child wants a specific size... so be it
+                    resultSize = childDimension;
+                    resultMode = EXACTLY;
+                } else if (childDimension == MATCH_PARENT) {
+                    // Child wants to be our size, but our size is not fixed.
+                    // Constrain child to not be bigger than us.
+                    resultSize = size;
+                    resultMode = AT_MOST;
+                } else if (childDimension == WRAP_CONTENT) {
+                    // Child wants to determine its own size. It can't be
+                    // bigger than us.
+                    resultSize = size;
+                    resultMode = AT_MOST;
+                }
+                break;
+
+            // Parent asked to see how big we want to be
+            case UNSPECIFIED:
+            default:
+                if (childDimension >= 0) {
+                    // Child wants a specific size... let him have it
+                    resultSize = childDimension;
+                    resultMode = EXACTLY;
+                } else if (childDimension == MATCH_PARENT
+                        || childDimension == WRAP_CONTENT) {
+                    // Child wants to be our size or to determine its own
+                    // size... find out how big it should be
+                    resultSize = 0;
+                    resultMode = UNSPECIFIED;
+                }
+                break;
+        }
+        return makeMeasureSpec(resultSize, resultMode);
+    }
+}
@@ -0,0 +1,91 @@
+package com.cry.layoutengine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DependencySorterTest {
+    private static final int VERB_COUNT = 22;
+    private static final int LEFT_OF = 0;
+    private static final int ABOVE = 2;
+    private static final int[] HORIZONTAL = {LEFT_OF};
+    private static final int[] VERTICAL = {ABOVE};
+
+    private final DependencySorter sorter = new DependencySorter();
+
+    private static int[] rules(int leftOf, int above) {
+        final int[] rules = new int[VERB_COUNT];
+        rules[LEFT_OF] = leftOf;
+        rules[ABOVE] = above;
+        return rules;
+    }
+
+    @Test
+    public void anchorsComeFirst_perAxis() {
+        // 10 is left of 20, 20 is left of 30; 30 is above 10.
+        final int[] ids = {10, 20, 30};
+        final int[][] rules = {rules(20, 0), rules(30, 0), rules(0, 10)};
+        final int[] sorted = new int[3];
+        sorter.setNodes(3, ids);
+
+        sorter.sort(rules, HORIZONTAL, sorted);
+        assertArrayEquals(new int[]{2, 1, 0}, sorted);
+
+        sorter.sort(rules, VERTICAL, sorted);
+        assertTrue(indexIn(sorted, 0) < indexIn(sorted, 2));
+    }
+
+    @Test
+    public void missingAndSelfAnchorsAreIgnored() {
+        final int[] ids = {1, DependencySorter.NO_ID};
+        final int[][] rules = {rules(1, 0), rules(99, 0)};
+        final int[] sorted = new int[2];
+        sorter.setNodes(2, ids);
+        sorter.sort(rules, HORIZONTAL, sorted);
+
+        assertEquals(-1, sorter.indexOfId(99));
+        assertEquals(-1, sorter.indexOfId(DependencySorter.NO_ID));
+        assertEquals(0, sorter.indexOfId(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cycle_throws() {
+        sorter.setNodes(2, new int[]{1, 2});
+        sorter.sort(new int[][]{rules(2, 0), rules(1, 0)}, HORIZONTAL, new int[2]);
+    }
+
+    @Test
+    public void reusedForSmallerAndLargerSets() {
+        final int count = 500;
+        final int[] ids = new int[count];
+        final int[][] rules = new int[count][];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            // Each child is left of the next one, so the order is reversed.
+            rules[i] = rules(i + 1 < count ? i + 2 : 0, 0);
+        }
+        final int[] sorted = new int[count];
+        sorter.setNodes(count, ids);
+        sorter.sort(rules, HORIZONTAL, sorted);
+        for (int i = 0; i < count; i++) {
+            assertEquals(count - 1 - i, sorted[i]);
+        }
+
+        sorter.setNodes(2, new int[]{7, 8});
+        sorter.sort(new int[][]{rules(8, 0), null}, HORIZONTAL, sorted);
+        assertEquals(1, sorted[0]);
+        assertEquals(0, sorted[1]);
+        assertEquals(-1, sorter.indexOfId(3));
+    }
+
+    private static int indexIn(int[] sorted, int child) {
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] == child) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package com.cry.layoutengine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The engine on its own, without any Android classes on the classpath.
+ */
+public class LinearLayoutEngineTest {
+    private final LinearLayoutEngine engine = new LinearLayoutEngine();
+    private final LayoutNodes nodes = new LayoutNodes();
+    private final DesiredSizeMeasurer measurer = new DesiredSizeMeasurer();
+
+    private static int exactly(int size) {
+        return MeasureSpec.makeMeasureSpec(size, MeasureSpec.EXACTLY);
+    }
+
+    private static int atMost(int size) {
+        return MeasureSpec.makeMeasureSpec(size, MeasureSpec.AT_MOST);
+    }
+
+    private int add(int width, int height, float weight, int desiredWidth, int desiredHeight) {
+        final int index = nodes.add(width, height, weight, -1, 0, 0, 0, 0, LayoutNodes.VISIBLE);
+        measurer.setDesiredSize(index, desiredWidth, desiredHeight);
+        return index;
+    }
+
+    @Test
+    public void wrapContent_stacksChildren() {
+        final int a = add(MeasureSpec.WRAP_CONTENT, MeasureSpec.WRAP_CONTENT, 0, 40, 10);
+        final int b = add(MeasureSpec.WRAP_CONTENT, MeasureSpec.WRAP_CONTENT, 0, 60, 20);
+
+        engine.measureVertical(nodes, atMost(100), atMost(100), measurer);
+        engine.layoutVertical(nodes, 0, 0, engine.getMeasuredWidth(), engine.getMeasuredHeight());
+
+        assertEquals(60, engine.getMeasuredWidth());
+        assertEquals(30, engine.getMeasuredHeight());
+        assertEquals(0, nodes.getTop(a));
+        assertEquals(10, nodes.getTop(b));
+        assertEquals(30, nodes.getBottom(b));
+    }
+
+    @Test
+    public void weights_lastChildTakesRemainder() {
+        final int a = add(MeasureSpec.MATCH_PARENT, 0, 1f, 0, 0);
+        final int b = add(MeasureSpec.MATCH_PARENT, 0, 1f, 0, 0);
+        final int c = add(MeasureSpec.MATCH_PARENT, 0, 1f, 0, 0);
+
+        engine.measureVertical(nodes, exactly(100), exactly(100), measurer);
+        engine.layoutVertical(nodes, 0, 0, 100, 100);
+
+        assertEquals(33, nodes.getMeasuredHeight(a));
+        assertEquals(33, nodes.getMeasuredHeight(b));
+        assertEquals(34, nodes.getMeasuredHeight(c));
+        assertEquals(66, nodes.getTop(c));
+        assertEquals(100, nodes.getMeasuredWidth(c));
+    }
+
+    @Test
+    public void fractionalWeights_fillHeightExactly() {
+        // 0.1 + 0.2 + 0.7 does not come back to exactly 0.7 after the float subtractions.
+        for (int height = 1; height <= 100; height++) {
+            nodes.clear();
+            final int a = add(MeasureSpec.MATCH_PARENT, 0, 0.1f, 0, 0);
+            final int b = add(MeasureSpec.MATCH_PARENT, 0, 0.2f, 0, 0);
+            final int c = add(MeasureSpec.MATCH_PARENT, 0, 0.7f, 0, 0);
+
+            engine.measureVertical(nodes, exactly(100), exactly(height), measurer);
+
+            assertEquals("height " + height, height, nodes.getMeasuredHeight(a)
+                    + nodes.getMeasuredHeight(b) + nodes.getMeasuredHeight(c));
+        }
+    }
+
+    @Test
+    public void marginsAndGravity_placeChildren() {
+        final int centered = nodes.add(MeasureSpec.WRAP_CONTENT, MeasureSpec.WRAP_CONTENT, 0,
+                Gravity.CENTER_HORIZONTAL, 0, 5, 0, 5, LayoutNodes.VISIBLE);
+        measurer.setDesiredSize(centered, 20, 10);
+        final int right = nodes.add(MeasureSpec.WRAP_CONTENT, MeasureSpec.WRAP_CONTENT, 0,
+                Gravity.RIGHT, 0, 0, 4, 0, LayoutNodes.VISIBLE);
+        measurer.setDesiredSize(right, 20, 10);
+
+        engine.measureVertical(nodes, exactly(100), exactly(100), measurer);
+        engine.layoutVertical(nodes, 0, 0, 100, 100);
+
+        assertEquals(40, nodes.getLeft(centered));
+        assertEquals(5, nodes.getTop(centered));
+        assertEquals(76, nodes.getLeft(right));
+        assertEquals(20, nodes.getTop(right));
+    }
+
+    @Test
+    public void goneChildren_takeNoSpace() {
+        final int gone = nodes.add(MeasureSpec.WRAP_CONTENT, 50, 0, -1, 0, 0, 0, 0,
+                LayoutNodes.GONE);
+        final int visible = add(MeasureSpec.WRAP_CONTENT, 10, 0, 10, 10);
+
+        engine.measureVertical(nodes, atMost(100), atMost(100), measurer);
+        engine.layoutVertical(nodes, 0, 0, engine.getMeasuredWidth(), engine.getMeasuredHeight());
+
+        assertEquals(10, engine.getMeasuredHeight());
+        assertEquals(0, nodes.getMeasuredHeight(gone));
+        assertEquals(0, nodes.getTop(visible));
+    }
+
+    @Test
+    public void matchParent_widensToLargestChild() {
+        final int wide = add(MeasureSpec.WRAP_CONTENT, MeasureSpec.WRAP_CONTENT, 0, 70, 10);
+        final int match = add(MeasureSpec.MATCH_PARENT, MeasureSpec.WRAP_CONTENT, 0, 10, 10);
+
+        engine.measureVertical(nodes, atMost(100), atMost(100), measurer);
+
+        assertEquals(70, engine.getMeasuredWidth());
+        assertEquals(70, nodes.getMeasuredWidth(wide));
+        assertEquals(70, nodes.getMeasuredWidth(match));
+    }
+
+    @Test
+    public void tooTall_reportsTooSmallState() {
+        add(MeasureSpec.WRAP_CONTENT, 80, 0, 10, 80);
+        add(MeasureSpec.WRAP_CONTENT, 80, 0, 10, 80);
+
+        engine.measureVertical(nodes, atMost(100), atMost(100), measurer);
+
+        assertEquals(100, engine.getMeasuredHeight());
+        assertEquals(MeasureSpec.MEASURED_STATE_TOO_SMALL,
+                engine.getMeasuredHeightAndState() & MeasureSpec.MEASURED_STATE_MASK);
+    }
+}
@@ -24,12 +24,15 @@ import android.view.View;
 import android.view.ViewOutlineProvider;
 import android.widget.FrameLayout;
 
+import com.cry.layoutengine.LayoutTracer;
 import com.github.florent37.shapeofview.manager.ClipDrawableManager;
 import com.github.florent37.shapeofview.manager.ClipManager;
 import com.github.florent37.shapeofview.manager.ClipPathManager;
 
 public class ShapeOfView extends FrameLayout {
 
+    private static final int TRACE_CREATE_MASK = LayoutTracer.register("ShapeOfView.createMask");
+
     private ClipManager clipManager = null;
 
     private final Paint clipPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -112,8 +115,10 @@ public class ShapeOfView extends FrameLayout {
                 }
 
                 if (clipManager != null) {
+                    LayoutTracer.begin(TRACE_CREATE_MASK);
                     clipManager.setupClipLayout(width, height);
                     mask = clipManager.createMask(width, height);
+                    LayoutTracer.end(TRACE_CREATE_MASK);
                 }
 
                 //this needs to be fixed for 25.4.0